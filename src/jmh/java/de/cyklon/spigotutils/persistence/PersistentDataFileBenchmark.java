@@ -0,0 +1,77 @@
+package de.cyklon.spigotutils.persistence;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.persistence.PersistentDataType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * open latency and per-get cost of the {@link DataFormat#GZIP} and the {@link DataFormat#MAPPED} format.
+ * <p>
+ * {@code open} reads the file, {@code openAndGet} also reads one value like a plugin loading a player file does,
+ * {@code get} reads from an open file after the warmup decoded every entry
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PersistentDataFileBenchmark {
+
+    @Param({"GZIP", "MAPPED"})
+    public DataFormat format;
+
+    @Param({"100", "10000"})
+    public int entries;
+
+    private File file;
+    private NamespacedKey[] keys;
+    private PersistentDataFile opened;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = Files.createTempFile("benchmark", ".dat").toFile();
+        keys = new NamespacedKey[entries];
+        PersistentDataFile data = new PersistentDataFile(file, SaveMode.MANUAL, format);
+        for (int i = 0; i < entries; i++) {
+            keys[i] = NamespacedKey.fromString("benchmark:key_" + i);
+            data.set(keys[i], PersistentDataType.STRING, "value of entry " + i);
+        }
+        data.save();
+        opened = new PersistentDataFile(file, SaveMode.MANUAL, format);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private NamespacedKey nextKey() {
+        NamespacedKey key = keys[next];
+        next = next + 1 == keys.length ? 0 : next + 1;
+        return key;
+    }
+
+    @Benchmark
+    public PersistentDataFile open() {
+        return new PersistentDataFile(file, SaveMode.MANUAL, format);
+    }
+
+    @Benchmark
+    public String openAndGet() {
+        return new PersistentDataFile(file, SaveMode.MANUAL, format).get(nextKey(), PersistentDataType.STRING);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String get() {
+        return opened.get(nextKey(), PersistentDataType.STRING);
+    }
+
+}
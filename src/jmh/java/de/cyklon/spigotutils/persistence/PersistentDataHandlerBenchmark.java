@@ -0,0 +1,129 @@
+package de.cyklon.spigotutils.persistence;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.craftbukkit.v1_20_R1.persistence.CraftPersistentDataContainer;
+import org.bukkit.craftbukkit.v1_20_R1.persistence.CraftPersistentDataTypeRegistry;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * allocations of the boxed accessors against the primitive ones, compare {@code gc.alloc.rate.norm} of the gc profiler
+ * which the benchmark profile enables by default.
+ * <p>
+ * The counters stay around one million, outside of the {@link Integer} cache and of the -128..1024 cache of
+ * {@code NBTTagInt}, like real counters of coins or play time. Every write allocates its new tag, the boxed
+ * accessors additionally allocate the boxed arguments and results, which the primitive ones are meant to avoid.
+ * Doubles are never cached, so the double accessors show the same on any value
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PersistentDataHandlerBenchmark {
+
+    private static final NamespacedKey KEY = NamespacedKey.fromString("benchmark:counter");
+    private static final NamespacedKey DOUBLE_KEY = NamespacedKey.fromString("benchmark:balance");
+    private static final int START = 1_000_000;
+    private static final double DOUBLE_START = 1_000_000.5;
+
+    // the operators do not capture anything, so only the accessors allocate
+    private static final Function<Integer, Integer> BOXED_INCREMENT = i -> i + 1;
+    private static final Function<Integer, Integer> BOXED_DECREMENT = i -> i - 1;
+    private static final IntUnaryOperator INCREMENT = i -> i + 1;
+    private static final IntUnaryOperator DECREMENT = i -> i - 1;
+    private static final Function<Double, Double> BOXED_DOUBLE_INCREMENT = d -> d + 1;
+    private static final Function<Double, Double> BOXED_DOUBLE_DECREMENT = d -> d - 1;
+    private static final DoubleUnaryOperator DOUBLE_INCREMENT = d -> d + 1;
+    private static final DoubleUnaryOperator DOUBLE_DECREMENT = d -> d - 1;
+
+    @Param({"file", "craft"})
+    public String container;
+
+    private File file;
+    private PersistentDataHandler handler;
+    private int delta = 1;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        PersistentDataContainer data;
+        if (container.equals("file")) {
+            file = Files.createTempFile("benchmark", ".dat").toFile();
+            data = new PersistentDataFile(file, SaveMode.MANUAL);
+        } else data = new CraftPersistentDataContainer(new CraftPersistentDataTypeRegistry());
+        handler = PersistentDataHandler.get(data);
+        handler.set(KEY, START);
+        handler.set(DOUBLE_KEY, DOUBLE_START);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (file != null) Files.deleteIfExists(file.toPath());
+    }
+
+    // alternates between +1 and -1, so the counters stay at the same magnitude
+    private int delta() {
+        return delta = -delta;
+    }
+
+    @Benchmark
+    public Integer boxedGet() {
+        return handler.getIntOrDefault(KEY, Integer.valueOf(0));
+    }
+
+    @Benchmark
+    public int primitiveGet() {
+        return handler.getIntOrDefault(KEY, 0);
+    }
+
+    @Benchmark
+    public Integer boxedRevise() {
+        return handler.reviseInt(KEY, delta() > 0 ? BOXED_INCREMENT : BOXED_DECREMENT);
+    }
+
+    @Benchmark
+    public int primitiveRevise() {
+        return handler.reviseAsInt(KEY, delta() > 0 ? INCREMENT : DECREMENT, 0);
+    }
+
+    @Benchmark
+    public int addInt() {
+        return handler.addInt(KEY, delta());
+    }
+
+    @Benchmark
+    public Double boxedGetDouble() {
+        return handler.getDoubleOrDefault(DOUBLE_KEY, Double.valueOf(0));
+    }
+
+    @Benchmark
+    public double primitiveGetDouble() {
+        return handler.getDoubleOrDefault(DOUBLE_KEY, 0D);
+    }
+
+    @Benchmark
+    public Double boxedReviseDouble() {
+        return handler.reviseDouble(DOUBLE_KEY, delta() > 0 ? BOXED_DOUBLE_INCREMENT : BOXED_DOUBLE_DECREMENT);
+    }
+
+    @Benchmark
+    public double primitiveReviseDouble() {
+        return handler.reviseAsDouble(DOUBLE_KEY, delta() > 0 ? DOUBLE_INCREMENT : DOUBLE_DECREMENT, 0);
+    }
+
+    @Benchmark
+    public double addDouble() {
+        return handler.addDouble(DOUBLE_KEY, delta());
+    }
+
+}
@@ -1,6 +1,7 @@
 package de.cyklon.spigotutils.item;
 
 import de.cyklon.spigotutils.adventure.Formatter;
+import de.cyklon.spigotutils.nbt.NBTHolder;
 import de.cyklon.spigotutils.nbt.NBTItem;
 import de.cyklon.spigotutils.version.Version;
 import net.kyori.adventure.text.Component;
@@ -29,6 +30,10 @@ public class ItemBuilder {
 
     private ItemMeta meta;
     private ItemStack item;
+    /**
+     * nbt writes are buffered and applied in one session by {@link #build()}, after the meta
+     */
+    private final List<Consumer<NBTHolder>> nbtWrites = new ArrayList<>();
 
     /**
      * Create a ItemBuilder with a specific Material
@@ -287,13 +292,20 @@ public class ItemBuilder {
         return this;
     }
 
-    private ItemBuilder processNBT(Consumer<NBTItem> consumer) {
-        NBTItem nbt = new NBTItem(item);
-        consumer.accept(nbt);
-        item = nbt.getItem();
+    private ItemBuilder processNBT(Consumer<NBTHolder> write) {
+        nbtWrites.add(write);
         return this;
     }
 
+    /**
+     * applies any number of nbt writes to the stack at once
+     * @param editor the writes, they run together with all other nbt writes when the stack is built
+     * @see NBTHolder
+     */
+    public ItemBuilder editNBT(Consumer<NBTHolder> editor) {
+        return processNBT(editor);
+    }
+
     public ItemBuilder setNBT(String key, int value) {
         return processNBT(nbt -> nbt.set(key, value));
     }
@@ -354,10 +366,20 @@ public class ItemBuilder {
 
     /**
      * builds the builder to the actual stack
+     * <p>
+     * the nbt writes are applied after the meta, so they win over the meta on conflicting keys
      * @return the finished item stack
      */
     public ItemStack build() {
         item.setItemMeta(meta);
+        if (!nbtWrites.isEmpty()) {
+            NBTItem nbt = new NBTItem(item);
+            nbt.edit(holder -> nbtWrites.forEach(write -> write.accept(holder)));
+            item = nbt.getItem();
+            // the written tags are part of the meta now, a following build keeps them
+            meta = item.getItemMeta();
+            nbtWrites.clear();
+        }
         return item;
     }
 
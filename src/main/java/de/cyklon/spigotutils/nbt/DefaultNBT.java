@@ -5,9 +5,15 @@ import org.bukkit.inventory.ItemStack;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static de.cyklon.spigotutils.nms.NMSReflection.nmsClass;
 import static de.cyklon.spigotutils.nms.NMSReflection.obcClass;
@@ -28,6 +34,16 @@ abstract class DefaultNBT implements NBTHolder {
 	 * Get or create NBTTagCompound
 	 */
 	protected final static MethodHandle GET_OR_CREATE_NBT_TAG_COMPOUND;
+	/**
+	 * {@link net.minecraft.world.item.ItemStack#v()}
+	 * <p>
+	 * Get NBTTagCompound, {@code null} if the item has none
+	 */
+	protected final static MethodHandle GET_NBT_TAG_COMPOUND;
+	/**
+	 * {@link net.minecraft.nbt.NBTTagCompound#NBTTagCompound()}
+	 */
+	protected final static MethodHandle NEW_NBT_TAG_COMPOUND;
 	/**
 	 * {@link org.bukkit.craftbukkit.v1_20_R1.inventory.CraftItemStack#asCraftMirror(net.minecraft.world.item.ItemStack)}
 	 */
@@ -36,6 +52,10 @@ abstract class DefaultNBT implements NBTHolder {
 	 * {@link net.minecraft.world.item.ItemStack#c(net.minecraft.nbt.NBTTagCompound)} )} )}
 	 */
 	protected final static MethodHandle SET_NBT_TAG_COMPOUND;
+	/**
+	 * getter of {@code CraftItemStack.handle}, typed {@code (Object)Object}
+	 */
+	protected final static MethodHandle CRAFT_ITEM_STACK_HANDLE;
 
 
 	/*
@@ -92,6 +112,10 @@ abstract class DefaultNBT implements NBTHolder {
 	protected final static MethodHandle CONTAINS_KEY;
 	protected final static MethodHandle IS_EMPTY;
 	protected final static MethodHandle REMOVE;
+	/**
+	 * the raw tag of a key, {@code null} if it does not exist
+	 */
+	protected final static MethodHandle GET_TAG;
 
 	private static MethodHandle findSetter(Class<?> type, MethodHandles.Lookup lookup) throws NoSuchMethodException, IllegalAccessException {
 		return findSetter(type, "a", lookup);
@@ -123,7 +147,12 @@ abstract class DefaultNBT implements NBTHolder {
 			AS_NMS_COPY = lookup.findStatic(craftItemStackClass, "asNMSCopy", MethodType.methodType(nmsItemStackClass, ItemStack.class));
 			AS_CRAFT_MIRROR = lookup.findStatic(craftItemStackClass, "asCraftMirror", MethodType.methodType(craftItemStackClass, nmsItemStackClass));
 			GET_OR_CREATE_NBT_TAG_COMPOUND = lookup.findVirtual(nmsItemStackClass, "w", MethodType.methodType(nbtTagCompoundClass));
+			GET_NBT_TAG_COMPOUND = lookup.findVirtual(nmsItemStackClass, "v", MethodType.methodType(nbtTagCompoundClass));
+			NEW_NBT_TAG_COMPOUND = lookup.findConstructor(nbtTagCompoundClass, MethodType.methodType(void.class));
 			SET_NBT_TAG_COMPOUND = lookup.findVirtual(nmsItemStackClass, "c", MethodType.methodType(void.class, nbtTagCompoundClass));
+			Field handleField = craftItemStackClass.getDeclaredField("handle");
+			handleField.setAccessible(true);
+			CRAFT_ITEM_STACK_HANDLE = lookup.unreflectGetter(handleField).asType(MethodType.methodType(Object.class, Object.class));
 
 			SET_INT = findSetter(int.class, lookup);
 			SET_BYTE = findSetter(byte.class, lookup);
@@ -162,6 +191,7 @@ abstract class DefaultNBT implements NBTHolder {
 			CONTAINS_KEY = findMethod("e", boolean.class, String.class, lookup);
 			IS_EMPTY = findMethod("g", boolean.class, lookup);
 			REMOVE = findMethod("r", void.class, String.class, lookup);
+			GET_TAG = findMethod("c", nmsClass("nbt", "NBTBase"), String.class, lookup);
 		} catch (Exception e) {
 			throw new ExceptionInInitializerError(e);
 		}
@@ -169,7 +199,7 @@ abstract class DefaultNBT implements NBTHolder {
 
 	protected static Object invokeStatic(MethodHandle handle, Object... parameters) {
 		try {
-			return handle.invoke(handle, parameters);
+			return handle.invokeWithArguments(parameters);
 		} catch (Throwable e) {
 			return null;
 		}
@@ -177,13 +207,27 @@ abstract class DefaultNBT implements NBTHolder {
 
 	protected static Object invoke(MethodHandle handle, Object obj, Object... parameters) {
 		try {
-			return handle.invoke(obj, parameters);
+			Object[] arguments = new Object[parameters.length + 1];
+			arguments[0] = obj;
+			System.arraycopy(parameters, 0, arguments, 1, parameters.length);
+			return handle.invokeWithArguments(arguments);
 		} catch (Throwable e) {
 			return null;
 		}
 	}
 
 	private final Object nbt;
+	private int batchDepth;
+	private boolean changed;
+	/**
+	 * the hash of every entry, {@code null} until the content hash is computed the first time
+	 */
+	private Map<String, EntryHash> entryHashes;
+	/**
+	 * keys written since the last content hash, only they are hashed again
+	 */
+	private final Set<String> staleKeys = new HashSet<>();
+	private long contentHash;
 
 	protected DefaultNBT(Object nbt) {
 		this.nbt = nbt;
@@ -191,6 +235,101 @@ abstract class DefaultNBT implements NBTHolder {
 
 	protected abstract void onChange(Object nbt);
 
+	private void changed() {
+		if (batchDepth == 0) onChange(nbt);
+		else changed = true;
+	}
+
+	/**
+	 * defers {@link #onChange(Object)} until the matching {@link #endBatch()}, batches may be nested
+	 */
+	public void beginBatch() {
+		batchDepth++;
+	}
+
+	/**
+	 * ends a batch, the outermost one runs {@link #onChange(Object)} once if anything changed
+	 */
+	public void endBatch() {
+		if (batchDepth == 0) throw new IllegalStateException("No batch has been started");
+		if (--batchDepth == 0 && changed) {
+			changed = false;
+			onChange(nbt);
+		}
+	}
+
+	@Override
+	public void edit(Consumer<NBTHolder> editor) {
+		beginBatch();
+		try {
+			editor.accept(this);
+		} finally {
+			endBatch();
+		}
+	}
+
+	/**
+	 * @return whether the nbt can also be changed past this holder, every entry is then checked on each content hash
+	 */
+	protected boolean isShared() {
+		return false;
+	}
+
+	/**
+	 * marks the entry of the key for rehashing and propagates the change
+	 */
+	private void changed(String key) {
+		if (entryHashes != null && key != null) staleKeys.add(key);
+		changed();
+	}
+
+	@Override
+	public long contentHash() {
+		if (entryHashes == null) {
+			entryHashes = new HashMap<>();
+			contentHash = 0;
+			for (String key : keySet()) rehash(key, invoke(GET_TAG, nbt, key));
+		} else if (isShared()) {
+			// numbers and strings are immutable, an entry still holding the same instance does not need to be hashed again
+			Set<String> keys = keySet();
+			for (String key : keys) {
+				Object tag = invoke(GET_TAG, nbt, key);
+				EntryHash cached = entryHashes.get(key);
+				if (cached == null || cached.tag() != tag || !NBTHash.isImmutable(tag)) rehash(key, tag);
+			}
+			if (entryHashes.size() > keys.size()) {
+				for (String key : new ArrayList<>(entryHashes.keySet())) {
+					if (!keys.contains(key)) rehash(key, null);
+				}
+			}
+		} else {
+			for (String key : staleKeys) rehash(key, invoke(GET_TAG, nbt, key));
+		}
+		staleKeys.clear();
+		return contentHash;
+	}
+
+	private void rehash(String key, Object tag) {
+		EntryHash updated = tag == null ? null : new EntryHash(tag, NBTHash.entry(key, tag));
+		EntryHash old = updated == null ? entryHashes.remove(key) : entryHashes.put(key, updated);
+		if (old != null) contentHash -= old.hash();
+		if (updated != null) contentHash += updated.hash();
+	}
+
+	private record EntryHash(Object tag, long hash) {}
+
+	@Override
+	public Set<String> diff(NBTHolder other) {
+		if (!(other instanceof DefaultNBT dnbt)) throw new IllegalArgumentException("Unsupported nbt holder " + other);
+		return NBTHash.diff(tags(), dnbt.tags());
+	}
+
+	private Map<String, Object> tags() {
+		Map<String, Object> tags = new HashMap<>();
+		for (String key : keySet()) tags.put(key, invoke(GET_TAG, nbt, key));
+		return tags;
+	}
+
 	@Override
 	public int hashCode() {
 		return nbt.hashCode();
@@ -210,91 +349,91 @@ abstract class DefaultNBT implements NBTHolder {
 	@Override
 	public void set(String key, int value) {
 		invoke(SET_INT, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
 	public void set(String key, byte value) {
 		invoke(SET_BYTE, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
 	public void set(String key, long value) {
 		invoke(SET_LONG, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
 	public void set(String key, UUID value) {
 		invoke(SET_UUID, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
 	public void set(String key, float value) {
 		invoke(SET_FLOAT, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
 	public void set(String key, int[] value) {
 		invoke(SET_INT_ARRAY, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
 	public void set(String key, short value) {
 		invoke(SET_SHORT, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
 	public void set(String key, byte[] value) {
 		invoke(SET_BYTE_ARRAY, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
 	public void set(String key, double value) {
 		invoke(SET_DOUBLE, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
 	public void set(String key, long[] value) {
 		invoke(SET_LONG_ARRAY, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
 	public void set(String key, String value) {
 		invoke(SET_STRING, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
 	public void set(String key, boolean value) {
 		invoke(SET_BOOLEAN, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
 	public void setByteList(String key, List<Byte> value) {
 		invoke(SET_BYTE_LIST, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
 	public void setIntList(String key, List<Integer> value) {
 		invoke(SET_INT_LIST, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
 	public void setLongList(String key, List<Long> value) {
 		invoke(SET_LONG_LIST, nbt, key, value);
-		onChange(nbt);
+		changed(key);
 	}
 
 	@Override
@@ -381,6 +520,108 @@ abstract class DefaultNBT implements NBTHolder {
 	@Override
 	public void remove(String key) {
 		invoke(REMOVE, nbt, key);
-		onChange(nbt);
+		changed(key);
+	}
+
+	@Override
+	public boolean has(NBTPath path) {
+		try {
+			return path.getTag(nbt) != null;
+		} catch (Throwable t) {
+			throw pathException(path, t);
+		}
+	}
+
+	@Override
+	public int getInt(NBTPath path) {
+		try {
+			return path.getInt(nbt);
+		} catch (Throwable t) {
+			throw pathException(path, t);
+		}
+	}
+
+	@Override
+	public long getLong(NBTPath path) {
+		try {
+			return path.getLong(nbt);
+		} catch (Throwable t) {
+			throw pathException(path, t);
+		}
+	}
+
+	@Override
+	public double getDouble(NBTPath path) {
+		try {
+			return path.getDouble(nbt);
+		} catch (Throwable t) {
+			throw pathException(path, t);
+		}
+	}
+
+	@Override
+	public String getString(NBTPath path) {
+		try {
+			return path.getString(nbt);
+		} catch (Throwable t) {
+			throw pathException(path, t);
+		}
+	}
+
+	@Override
+	public void set(NBTPath path, int value) {
+		try {
+			path.setInt(nbt, value);
+		} catch (Throwable t) {
+			throw pathException(path, t);
+		}
+		changed(path.rootKey());
+	}
+
+	@Override
+	public void set(NBTPath path, long value) {
+		try {
+			path.setLong(nbt, value);
+		} catch (Throwable t) {
+			throw pathException(path, t);
+		}
+		changed(path.rootKey());
+	}
+
+	@Override
+	public void set(NBTPath path, double value) {
+		try {
+			path.setDouble(nbt, value);
+		} catch (Throwable t) {
+			throw pathException(path, t);
+		}
+		changed(path.rootKey());
+	}
+
+	@Override
+	public void set(NBTPath path, String value) {
+		try {
+			path.setString(nbt, value);
+		} catch (Throwable t) {
+			throw pathException(path, t);
+		}
+		changed(path.rootKey());
+	}
+
+	@Override
+	public void remove(NBTPath path) {
+		boolean removed;
+		try {
+			removed = path.remove(nbt);
+		} catch (Throwable t) {
+			throw pathException(path, t);
+		}
+		if (removed) changed(path.rootKey());
+	}
+
+	private static RuntimeException pathException(NBTPath path, Throwable t) {
+		if (t instanceof RuntimeException e) return e;
+		if (t instanceof Error e) throw e;
+		return new RuntimeException("Unable to access nbt path '" + path + "'", t);
 	}
 }
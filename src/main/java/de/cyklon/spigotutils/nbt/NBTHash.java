@@ -0,0 +1,185 @@
+package de.cyklon.spigotutils.nbt;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static de.cyklon.spigotutils.nms.NMSReflection.nmsClass;
+
+/**
+ * order independent 64 bit content hash of compounds and their structural diff.
+ * <p>
+ * Every entry is hashed over its key and the hash of its value. A compound hashes to the sum of its entry hashes at every depth,
+ * so the order the entries were inserted in does not matter. Lists hash their elements in order, every other tag is hashed over
+ * its type id and its binary payload
+ */
+public final class NBTHash {
+
+	private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+	private static final long FNV_PRIME = 0x100000001B3L;
+
+	/**
+	 * {@link net.minecraft.nbt.NBTBase#a(DataOutput)}, writes the payload of the tag, typed {@code (Object, DataOutput)void}
+	 */
+	private static final MethodHandle WRITE;
+	/**
+	 * {@link net.minecraft.nbt.NBTBase#b()}, the type id of the tag, typed {@code (Object)byte}
+	 */
+	private static final MethodHandle TYPE_ID;
+	/**
+	 * {@link net.minecraft.nbt.NBTTagCompound#e()}, typed {@code (Object)Set}
+	 */
+	private static final MethodHandle KEYS;
+	/**
+	 * {@link net.minecraft.nbt.NBTTagCompound#c(String)}, typed {@code (Object, String)Object}
+	 */
+	private static final MethodHandle GET;
+
+	private static final Class<?> NBT_TAG_COMPOUND;
+	private static final Class<?> NBT_TAG_LIST;
+	private static final Class<?> NBT_NUMBER;
+	private static final Class<?> NBT_TAG_STRING;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			Class<?> nbtBaseClass = nmsClass("nbt", "NBTBase");
+			NBT_TAG_COMPOUND = nmsClass("nbt", "NBTTagCompound");
+			NBT_TAG_LIST = nmsClass("nbt", "NBTTagList");
+			NBT_NUMBER = nmsClass("nbt", "NBTNumber");
+			NBT_TAG_STRING = nmsClass("nbt", "NBTTagString");
+			WRITE = lookup.findVirtual(nbtBaseClass, "a", MethodType.methodType(void.class, DataOutput.class))
+					.asType(MethodType.methodType(void.class, Object.class, DataOutput.class));
+			TYPE_ID = lookup.findVirtual(nbtBaseClass, "b", MethodType.methodType(byte.class))
+					.asType(MethodType.methodType(byte.class, Object.class));
+			KEYS = lookup.findVirtual(NBT_TAG_COMPOUND, "e", MethodType.methodType(Set.class))
+					.asType(MethodType.methodType(Set.class, Object.class));
+			GET = lookup.findVirtual(NBT_TAG_COMPOUND, "c", MethodType.methodType(nbtBaseClass, String.class))
+					.asType(MethodType.methodType(Object.class, Object.class, String.class));
+		} catch (Exception e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private NBTHash() {}
+
+	/**
+	 * @param tag the nms tag, {@code null} if the key does not exist
+	 * @return the contribution of the entry, 0 for missing entries
+	 */
+	public static long entry(@NotNull String key, @Nullable Object tag) {
+		if (tag == null) return 0;
+		try {
+			return entry(key, value(tag));
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException("Unable to hash the tag of '" + key + "'", t);
+		}
+	}
+
+	private static long entry(String key, long value) throws IOException {
+		Hasher hasher = new Hasher();
+		DataOutputStream out = new DataOutputStream(hasher);
+		out.writeInt(key.length());
+		out.writeChars(key);
+		out.writeLong(value);
+		return mix(hasher.hash);
+	}
+
+	private static long value(Object tag) throws Throwable {
+		byte type = (byte) TYPE_ID.invokeExact(tag);
+		if (NBT_TAG_COMPOUND.isInstance(tag)) {
+			long hash = type;
+			for (Object key : (Set<?>) KEYS.invokeExact(tag)) {
+				hash += entry((String) key, value((Object) GET.invokeExact(tag, (String) key)));
+			}
+			return hash;
+		}
+		Hasher hasher = new Hasher();
+		DataOutputStream out = new DataOutputStream(hasher);
+		// the payload alone does not tell an int from a float with the same bits
+		out.writeByte(type);
+		if (NBT_TAG_LIST.isInstance(tag)) {
+			List<?> list = (List<?>) tag;
+			out.writeInt(list.size());
+			for (Object element : list) out.writeLong(value(element));
+		} else WRITE.invokeExact(tag, (DataOutput) out);
+		return mix(hasher.hash);
+	}
+
+	/**
+	 * @return whether the tag can never change, so a hash computed for the same instance stays valid
+	 */
+	static boolean isImmutable(@NotNull Object tag) {
+		return NBT_NUMBER.isInstance(tag) || NBT_TAG_STRING.isInstance(tag);
+	}
+
+	/**
+	 * @param tags nms tags by key
+	 */
+	public static long of(@NotNull Map<String, ?> tags) {
+		long hash = 0;
+		for (Map.Entry<String, ?> entry : tags.entrySet()) hash += entry(entry.getKey(), entry.getValue());
+		return hash;
+	}
+
+	/**
+	 * @return the keys which only exist in one of the maps or have different values
+	 */
+	public static @NotNull Set<String> diff(@NotNull Map<String, ?> a, @NotNull Map<String, ?> b) {
+		Set<String> changed = new HashSet<>();
+		for (Map.Entry<String, ?> entry : a.entrySet()) {
+			if (!Objects.equals(entry.getValue(), b.get(entry.getKey()))) changed.add(entry.getKey());
+		}
+		for (String key : b.keySet()) {
+			if (!a.containsKey(key)) changed.add(key);
+		}
+		return changed;
+	}
+
+	/**
+	 * the finalizer of murmur3, so entries differing in their last bytes do not only differ in the low bits
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * 64 bit fnv-1a over everything written, the payload is hashed while it is written instead of being buffered
+	 */
+	private static final class Hasher extends OutputStream {
+
+		private long hash = FNV_OFFSET;
+
+		@Override
+		public void write(int b) {
+			hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+		}
+
+		@Override
+		public void write(byte @NotNull [] b, int off, int len) {
+			long hash = this.hash;
+			for (int i = off; i < off + len; i++) hash = (hash ^ (b[i] & 0xFF)) * FNV_PRIME;
+			this.hash = hash;
+		}
+	}
+
+}
@@ -3,6 +3,7 @@ package de.cyklon.spigotutils.nbt;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface NBTHolder {
 
@@ -41,5 +42,37 @@ public interface NBTHolder {
 	boolean isEmpty();
 	void remove(String key);
 
+	boolean has(NBTPath path);
+	int getInt(NBTPath path);
+	long getLong(NBTPath path);
+	double getDouble(NBTPath path);
+	String getString(NBTPath path);
+
+	/**
+	 * sets the value, missing compounds along the path are created, list elements have to exist already
+	 */
+	void set(NBTPath path, int value);
+	void set(NBTPath path, long value);
+	void set(NBTPath path, double value);
+	void set(NBTPath path, String value);
+	void remove(NBTPath path);
+
+	/**
+	 * applies all writes of the editor and propagates the changes once at the end
+	 */
+	void edit(Consumer<NBTHolder> editor);
+
+	/**
+	 * 64 bit hash of the content, independent of the key order at every depth. Only the entries written since the last call are hashed again.
+	 * Holders whose nbt is shared, like an item edited in place, look at every entry and hash again the ones that were replaced,
+	 * compounds and lists among them on every call
+	 */
+	long contentHash();
+
+	/**
+	 * @return the keys which only exist in one of the holders or have different values
+	 */
+	Set<String> diff(NBTHolder other);
+
 
 }
@@ -2,25 +2,70 @@ package de.cyklon.spigotutils.nbt;
 
 import org.bukkit.inventory.ItemStack;
 
+/**
+ * nbt view of an item.
+ * <p>
+ * A {@code CraftItemStack} is edited in place through its nms handle and {@link #getItem()} returns the same stack.
+ * Only plain bukkit stacks are copied, and the copy returned by {@link #getItem()} is edited in place from then on.
+ * An item without nbt is read through an empty compound, which is only attached to the item by the first write,
+ * so reading does not change how the item stacks
+ */
 public class NBTItem extends DefaultNBT {
 
 	private final Object nmsStack;
+	private final ItemStack mirror;
+	private final boolean shared;
+	private boolean attached;
 
 	public NBTItem(ItemStack stack) {
-		this(invokeStatic(AS_NMS_COPY, stack));
+		this(stack, handle(stack));
 	}
 
-	private NBTItem(Object stack) {
-		super(invokeStatic(GET_OR_CREATE_NBT_TAG_COMPOUND, stack));
+	private NBTItem(ItemStack stack, Object handle) {
+		this(handle != null ? handle : invokeStatic(AS_NMS_COPY, stack), handle != null ? stack : null);
+	}
+
+	private NBTItem(Object stack, ItemStack mirror) {
+		this(stack, mirror, invokeStatic(GET_NBT_TAG_COMPOUND, stack));
+	}
+
+	private NBTItem(Object stack, ItemStack mirror, Object nbt) {
+		super(nbt != null ? nbt : invokeStatic(NEW_NBT_TAG_COMPOUND));
 		this.nmsStack = stack;
+		this.mirror = mirror != null ? mirror : (ItemStack) invoke(AS_CRAFT_MIRROR, stack);
+		this.attached = nbt != null;
+		// only the copy of a plain bukkit stack belongs to this holder alone
+		this.shared = mirror != null;
+	}
+
+	/**
+	 * @return the nms stack backing the item, or {@code null} if it has to be copied
+	 */
+	private static Object handle(ItemStack stack) {
+		if (!craftItemStackClass.isInstance(stack)) return null;
+		try {
+			return (Object) CRAFT_ITEM_STACK_HANDLE.invokeExact((Object) stack);
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+	@Override
+	protected boolean isShared() {
+		return shared;
 	}
 
 	@Override
 	protected void onChange(Object nbt) {
+		if (!attached) {
+			// removing from an item without nbt must not give it an empty tag
+			if ((boolean) invoke(IS_EMPTY, nbt)) return;
+			attached = true;
+		}
 		invoke(SET_NBT_TAG_COMPOUND, nmsStack, nbt);
 	}
 
 	public ItemStack getItem() {
-		return (ItemStack) invoke(AS_CRAFT_MIRROR, nmsStack);
+		return mirror;
 	}
 }
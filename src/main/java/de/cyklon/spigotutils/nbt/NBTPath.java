@@ -0,0 +1,369 @@
+package de.cyklon.spigotutils.nbt;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static de.cyklon.spigotutils.nms.NMSReflection.nmsClass;
+
+/**
+ * a compiled path into nested compounds and lists, like {@code display.Lore[0]} or {@code a.b.c}.
+ * <p>
+ * Paths are parsed once and cached, queries walk the nms tags directly without wrapping them
+ */
+public final class NBTPath {
+
+	/**
+	 * keeps the cache bounded if paths are generated dynamically
+	 */
+	private static final int MAX_CACHED = 1024;
+	private static final Map<String, NBTPath> CACHE = new ConcurrentHashMap<>();
+
+	/**
+	 * the nms handles, only loaded when a path is used on tags. Compiling a path does not need the server
+	 */
+	private static final class Nms {
+
+		private static final Class<?> NBT_TAG_COMPOUND = DefaultNBT.nbtTagCompoundClass;
+		private static final Class<?> NBT_NUMBER;
+
+		// (Object, String)Object and (Object, String, Object)void
+		private static final MethodHandle GET_TAG;
+		private static final MethodHandle PUT_TAG;
+		// ()Object
+		private static final MethodHandle NEW_COMPOUND;
+
+		// the getters and setters of DefaultNBT, typed (Object, String)T and (Object, String, T)void
+		private static final MethodHandle GET_INT;
+		private static final MethodHandle GET_LONG;
+		private static final MethodHandle GET_DOUBLE;
+		private static final MethodHandle GET_STRING;
+		private static final MethodHandle SET_INT;
+		private static final MethodHandle SET_LONG;
+		private static final MethodHandle SET_DOUBLE;
+		private static final MethodHandle SET_STRING;
+		private static final MethodHandle REMOVE;
+
+		// values of list elements, (Object)T
+		private static final MethodHandle AS_INT;
+		private static final MethodHandle AS_LONG;
+		private static final MethodHandle AS_DOUBLE;
+		private static final MethodHandle AS_STRING;
+
+		// tags for list elements, (T)Object
+		private static final MethodHandle INT_TAG;
+		private static final MethodHandle LONG_TAG;
+		private static final MethodHandle DOUBLE_TAG;
+		private static final MethodHandle STRING_TAG;
+
+		static {
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				Class<?> nbtBaseClass = nmsClass("nbt", "NBTBase");
+				NBT_NUMBER = nmsClass("nbt", "NBTNumber");
+
+				GET_TAG = lookup.findVirtual(NBT_TAG_COMPOUND, "c", MethodType.methodType(nbtBaseClass, String.class))
+						.asType(MethodType.methodType(Object.class, Object.class, String.class));
+				PUT_TAG = lookup.findVirtual(NBT_TAG_COMPOUND, "a", MethodType.methodType(nbtBaseClass, String.class, nbtBaseClass))
+						.asType(MethodType.methodType(void.class, Object.class, String.class, Object.class));
+				NEW_COMPOUND = lookup.findConstructor(NBT_TAG_COMPOUND, MethodType.methodType(void.class))
+						.asType(MethodType.methodType(Object.class));
+
+				GET_INT = getter(DefaultNBT.GET_INT, int.class);
+				GET_LONG = getter(DefaultNBT.GET_LONG, long.class);
+				GET_DOUBLE = getter(DefaultNBT.GET_DOUBLE, double.class);
+				GET_STRING = getter(DefaultNBT.GET_STRING, Object.class);
+				SET_INT = setter(DefaultNBT.SET_INT, int.class);
+				SET_LONG = setter(DefaultNBT.SET_LONG, long.class);
+				SET_DOUBLE = setter(DefaultNBT.SET_DOUBLE, double.class);
+				SET_STRING = setter(DefaultNBT.SET_STRING, Object.class);
+				REMOVE = DefaultNBT.REMOVE.asType(MethodType.methodType(void.class, Object.class, String.class));
+
+				AS_INT = accessor(lookup, NBT_NUMBER, int.class);
+				AS_LONG = accessor(lookup, NBT_NUMBER, long.class);
+				AS_DOUBLE = accessor(lookup, NBT_NUMBER, double.class);
+				AS_STRING = accessor(lookup, nbtBaseClass, String.class);
+
+				INT_TAG = factory(lookup, nmsClass("nbt", "NBTTagInt"), int.class);
+				LONG_TAG = factory(lookup, nmsClass("nbt", "NBTTagLong"), long.class);
+				DOUBLE_TAG = factory(lookup, nmsClass("nbt", "NBTTagDouble"), double.class);
+				STRING_TAG = factory(lookup, nmsClass("nbt", "NBTTagString"), String.class);
+			} catch (Throwable t) {
+				throw new ExceptionInInitializerError(t);
+			}
+		}
+
+		private static MethodHandle getter(MethodHandle handle, Class<?> type) {
+			return handle.asType(MethodType.methodType(type, Object.class, String.class));
+		}
+
+		private static MethodHandle setter(MethodHandle handle, Class<?> type) {
+			return handle.asType(MethodType.methodType(void.class, Object.class, String.class, type));
+		}
+
+		/**
+		 * the obfuscated {@code getAsT()} of the class, the only abstract no-arg method returning the type
+		 */
+		private static MethodHandle accessor(MethodHandles.Lookup lookup, Class<?> type, Class<?> returnType) throws ReflectiveOperationException {
+			for (Method method : type.getDeclaredMethods()) {
+				if (method.getParameterCount() == 0 && method.getReturnType() == returnType && !method.getName().equals("toString")
+						&& Modifier.isPublic(method.getModifiers()) && !Modifier.isStatic(method.getModifiers())) {
+					return lookup.unreflect(method).asType(MethodType.methodType(returnType == String.class ? Object.class : returnType, Object.class));
+				}
+			}
+			throw new NoSuchMethodException(type.getName() + " has no accessor for " + returnType.getName());
+		}
+
+		/**
+		 * the obfuscated {@code valueOf(T)} of the tag class
+		 */
+		private static MethodHandle factory(MethodHandles.Lookup lookup, Class<?> tagClass, Class<?> valueType) throws ReflectiveOperationException {
+			for (Method method : tagClass.getDeclaredMethods()) {
+				if (Modifier.isStatic(method.getModifiers()) && method.getReturnType() == tagClass
+						&& method.getParameterCount() == 1 && method.getParameterTypes()[0] == valueType) {
+					return lookup.unreflect(method).asType(MethodType.methodType(Object.class, valueType == String.class ? Object.class : valueType));
+				}
+			}
+			throw new NoSuchMethodException(tagClass.getName() + " has no factory for " + valueType.getName());
+		}
+	}
+
+	private final String path;
+	/**
+	 * the key of every segment, {@code null} for list indices
+	 */
+	private final String[] keys;
+	private final int[] indices;
+
+	private NBTPath(String path, String[] keys, int[] indices) {
+		this.path = path;
+		this.keys = keys;
+		this.indices = indices;
+	}
+
+	/**
+	 * compiles the path, keys are separated by dots and list indices are written in brackets, e.g. {@code display.Lore[0]}
+	 *
+	 * @throws IllegalArgumentException if the path is malformed
+	 */
+	public static @NotNull NBTPath of(@NotNull String path) {
+		NBTPath compiled = CACHE.get(path);
+		if (compiled != null) return compiled;
+		compiled = compile(path);
+		if (CACHE.size() < MAX_CACHED) {
+			NBTPath previous = CACHE.putIfAbsent(path, compiled);
+			if (previous != null) return previous;
+		}
+		return compiled;
+	}
+
+	private static NBTPath compile(String path) {
+		List<String> keys = new ArrayList<>();
+		List<Integer> indices = new ArrayList<>();
+		int i = 0;
+		int length = path.length();
+		while (i < length) {
+			int end = i;
+			while (end < length && path.charAt(end) != '.' && path.charAt(end) != '[') end++;
+			if (end == i) throw new IllegalArgumentException("Empty key at " + i + " in path '" + path + "'");
+			keys.add(path.substring(i, end));
+			indices.add(-1);
+			i = end;
+			while (i < length && path.charAt(i) == '[') {
+				int close = path.indexOf(']', i);
+				if (close == -1) throw new IllegalArgumentException("Unclosed index at " + i + " in path '" + path + "'");
+				int index;
+				try {
+					index = Integer.parseInt(path, i + 1, close, 10);
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Invalid index at " + i + " in path '" + path + "'", e);
+				}
+				if (index < 0) throw new IllegalArgumentException("Negative index at " + i + " in path '" + path + "'");
+				keys.add(null);
+				indices.add(index);
+				i = close + 1;
+			}
+			if (i < length) {
+				if (path.charAt(i) != '.') throw new IllegalArgumentException("Unexpected '" + path.charAt(i) + "' at " + i + " in path '" + path + "'");
+				if (++i == length) throw new IllegalArgumentException("Path '" + path + "' ends with a dot");
+			}
+		}
+		if (keys.isEmpty()) throw new IllegalArgumentException("Empty path");
+		return new NBTPath(path, keys.toArray(String[]::new), indices.stream().mapToInt(Integer::intValue).toArray());
+	}
+
+	/**
+	 * @return the compound or list containing the last segment, or {@code null} if the path does not exist
+	 */
+	private Object parent(Object root, boolean create) throws Throwable {
+		Object tag = root;
+		for (int i = 0; i < keys.length - 1; i++) {
+			Object next = child(tag, i);
+			if (next == null) {
+				if (!create || keys[i] == null || !Nms.NBT_TAG_COMPOUND.isInstance(tag)) return null;
+				next = (Object) Nms.NEW_COMPOUND.invokeExact();
+				Nms.PUT_TAG.invokeExact(tag, keys[i], next);
+			}
+			tag = next;
+		}
+		return tag;
+	}
+
+	private Object child(Object tag, int segment) throws Throwable {
+		String key = keys[segment];
+		if (key != null) return Nms.NBT_TAG_COMPOUND.isInstance(tag) ? (Object) Nms.GET_TAG.invokeExact(tag, key) : null;
+		if (!(tag instanceof List<?> list)) return null;
+		int index = indices[segment];
+		return index < list.size() ? list.get(index) : null;
+	}
+
+	private String leafKey(Object parent) {
+		String key = keys[keys.length - 1];
+		return key != null && Nms.NBT_TAG_COMPOUND.isInstance(parent) ? key : null;
+	}
+
+	/**
+	 * @return the key in the root compound all writes of the path go to
+	 */
+	String rootKey() {
+		return keys[0];
+	}
+
+	/**
+	 * @return the number of segments, every list index is a segment of its own
+	 */
+	int length() {
+		return keys.length;
+	}
+
+	/**
+	 * @return the key of the segment, {@code null} for a list index
+	 */
+	String key(int segment) {
+		return keys[segment];
+	}
+
+	/**
+	 * @return the list index of the segment, -1 for a key
+	 */
+	int index(int segment) {
+		return indices[segment];
+	}
+
+	Object getTag(Object root) throws Throwable {
+		Object parent = parent(root, false);
+		return parent == null ? null : child(parent, keys.length - 1);
+	}
+
+	int getInt(Object root) throws Throwable {
+		Object parent = parent(root, false);
+		if (parent == null) return 0;
+		String key = leafKey(parent);
+		if (key != null) return (int) Nms.GET_INT.invokeExact(parent, key);
+		Object tag = child(parent, keys.length - 1);
+		return Nms.NBT_NUMBER.isInstance(tag) ? (int) Nms.AS_INT.invokeExact(tag) : 0;
+	}
+
+	long getLong(Object root) throws Throwable {
+		Object parent = parent(root, false);
+		if (parent == null) return 0;
+		String key = leafKey(parent);
+		if (key != null) return (long) Nms.GET_LONG.invokeExact(parent, key);
+		Object tag = child(parent, keys.length - 1);
+		return Nms.NBT_NUMBER.isInstance(tag) ? (long) Nms.AS_LONG.invokeExact(tag) : 0;
+	}
+
+	double getDouble(Object root) throws Throwable {
+		Object parent = parent(root, false);
+		if (parent == null) return 0;
+		String key = leafKey(parent);
+		if (key != null) return (double) Nms.GET_DOUBLE.invokeExact(parent, key);
+		Object tag = child(parent, keys.length - 1);
+		return Nms.NBT_NUMBER.isInstance(tag) ? (double) Nms.AS_DOUBLE.invokeExact(tag) : 0;
+	}
+
+	/**
+	 * @return the string, or {@code null} if the path does not exist
+	 */
+	String getString(Object root) throws Throwable {
+		Object parent = parent(root, false);
+		if (parent == null) return null;
+		String key = leafKey(parent);
+		if (key != null) return (String) (Object) Nms.GET_STRING.invokeExact(parent, key);
+		Object tag = child(parent, keys.length - 1);
+		return tag == null ? null : (String) (Object) Nms.AS_STRING.invokeExact(tag);
+	}
+
+	void setInt(Object root, int value) throws Throwable {
+		Object parent = parent(root, true);
+		String key = leafKey(parent);
+		if (key != null) Nms.SET_INT.invokeExact(parent, key, value);
+		else setElement(parent, (Object) Nms.INT_TAG.invokeExact(value));
+	}
+
+	void setLong(Object root, long value) throws Throwable {
+		Object parent = parent(root, true);
+		String key = leafKey(parent);
+		if (key != null) Nms.SET_LONG.invokeExact(parent, key, value);
+		else setElement(parent, (Object) Nms.LONG_TAG.invokeExact(value));
+	}
+
+	void setDouble(Object root, double value) throws Throwable {
+		Object parent = parent(root, true);
+		String key = leafKey(parent);
+		if (key != null) Nms.SET_DOUBLE.invokeExact(parent, key, value);
+		else setElement(parent, (Object) Nms.DOUBLE_TAG.invokeExact(value));
+	}
+
+	void setString(Object root, String value) throws Throwable {
+		Object parent = parent(root, true);
+		String key = leafKey(parent);
+		if (key != null) Nms.SET_STRING.invokeExact(parent, key, (Object) value);
+		else setElement(parent, (Object) Nms.STRING_TAG.invokeExact((Object) value));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void setElement(Object parent, Object tag) {
+		int index = indices[keys.length - 1];
+		if (keys[keys.length - 1] != null || !(parent instanceof List<?> list) || index >= list.size()) {
+			throw new IllegalArgumentException("The path '" + path + "' does not exist");
+		}
+		// lists only accept elements of their type
+		((List<Object>) list).set(index, tag);
+	}
+
+	/**
+	 * @return false if the path did not exist
+	 */
+	boolean remove(Object root) throws Throwable {
+		Object parent = parent(root, false);
+		if (parent == null || child(parent, keys.length - 1) == null) return false;
+		String key = leafKey(parent);
+		if (key != null) Nms.REMOVE.invokeExact(parent, key);
+		else ((List<?>) parent).remove(indices[keys.length - 1]);
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof NBTPath other && path.equals(other.path);
+	}
+
+	@Override
+	public int hashCode() {
+		return path.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+}
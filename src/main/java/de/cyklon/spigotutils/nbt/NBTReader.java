@@ -0,0 +1,339 @@
+package de.cyklon.spigotutils.nbt;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * pull parser for the nbt binary format, independent of the server.
+ * <p>
+ * {@link #next()} moves to the next tag, compounds and lists are entered like in a json parser.
+ * Values are only read when one of the value methods is called, unread values and subtrees passed to {@link #skip()}
+ * are skipped by their length without being decoded
+ * <pre>{@code
+ * try (NBTReader reader = NBTReader.compressed(in)) {
+ *     reader.next(); // the root compound
+ *     if (reader.find("DataVersion")) version = reader.intValue();
+ * }
+ * }</pre>
+ */
+public final class NBTReader implements Closeable {
+
+	/**
+	 * the nesting limit of the game
+	 */
+	private static final int MAX_DEPTH = 512;
+
+	public enum Token {
+		START_COMPOUND, END_COMPOUND, START_LIST, END_LIST, VALUE, END_DOCUMENT
+	}
+
+	private final DataInputStream in;
+
+	// one frame per open compound or list, lists keep their element type and remaining elements
+	private final boolean[] lists = new boolean[MAX_DEPTH];
+	private final NBTType[] elementTypes = new NBTType[MAX_DEPTH];
+	private final int[] remaining = new int[MAX_DEPTH];
+	private int depth;
+
+	private Token token;
+	private NBTType type;
+	private String name;
+	private boolean unread;
+	private boolean rootRead;
+
+	public NBTReader(@NotNull InputStream in) {
+		this.in = in instanceof DataInputStream data ? data : new DataInputStream(in);
+	}
+
+	/**
+	 * @return a reader for gzip compressed data, the format of most nbt files
+	 */
+	public static @NotNull NBTReader compressed(@NotNull InputStream in) throws IOException {
+		return new NBTReader(new BufferedInputStream(new GZIPInputStream(in)));
+	}
+
+	/**
+	 * moves to the next tag, skipping the value of the current tag if it was not read
+	 */
+	public @NotNull Token next() throws IOException {
+		if (token == Token.END_DOCUMENT) return token;
+		if (unread) {
+			skipPayload(type);
+			unread = false;
+		}
+		if (depth == 0) {
+			if (rootRead) return end(Token.END_DOCUMENT);
+			rootRead = true;
+			byte id = in.readByte();
+			if (id == 0) return end(Token.END_DOCUMENT);
+			return start(type(id), in.readUTF());
+		}
+		int frame = depth - 1;
+		if (lists[frame]) {
+			if (remaining[frame] == 0) {
+				depth--;
+				return end(Token.END_LIST);
+			}
+			remaining[frame]--;
+			return start(elementTypes[frame], null);
+		}
+		byte id = in.readByte();
+		if (id == 0) {
+			depth--;
+			return end(Token.END_COMPOUND);
+		}
+		return start(type(id), in.readUTF());
+	}
+
+	private Token start(NBTType type, String name) throws IOException {
+		this.type = type;
+		this.name = name;
+		if (type == NBTType.COMPOUND) {
+			push(false, null, 0);
+			return token = Token.START_COMPOUND;
+		}
+		if (type == NBTType.LIST) {
+			NBTType elementType = type(in.readByte());
+			int size = in.readInt();
+			if (size < 0) throw new IOException("Negative list size " + size);
+			push(true, elementType, size);
+			return token = Token.START_LIST;
+		}
+		unread = true;
+		return token = Token.VALUE;
+	}
+
+	private Token end(Token token) {
+		this.type = null;
+		this.name = null;
+		return this.token = token;
+	}
+
+	private void push(boolean list, NBTType elementType, int size) throws IOException {
+		if (depth == MAX_DEPTH) throw new IOException("The nbt data is nested deeper than " + MAX_DEPTH);
+		lists[depth] = list;
+		elementTypes[depth] = elementType;
+		remaining[depth] = size;
+		depth++;
+	}
+
+	/**
+	 * skips the current value or the rest of the current compound or list,
+	 * the next call to {@link #next()} returns the tag after it
+	 */
+	public void skip() throws IOException {
+		if (token == Token.VALUE) {
+			if (unread) skipPayload(type);
+			unread = false;
+		} else if (token == Token.START_COMPOUND) {
+			skipCompound();
+			depth--;
+		} else if (token == Token.START_LIST) {
+			int frame = depth - 1;
+			skipList(elementTypes[frame], remaining[frame]);
+			depth--;
+		} else throw new IllegalStateException("Nothing to skip at " + token);
+		token = null;
+	}
+
+	/**
+	 * moves to the tag with the name in the current compound, skipping all tags in front of it.
+	 * Has to be called right after entering the compound or after a tag of it was read or skipped
+	 *
+	 * @return false if the compound ended without the tag, the reader is then positioned after the compound
+	 */
+	public boolean find(@NotNull String name) throws IOException {
+		if (depth == 0 || lists[depth - 1]) throw new IllegalStateException("Not inside a compound");
+		while (true) {
+			Token token = next();
+			if (token == Token.END_COMPOUND) return false;
+			if (name.equals(this.name)) return true;
+			skip();
+		}
+	}
+
+	private void skipPayload(NBTType type) throws IOException {
+		switch (type) {
+			case BYTE_ARRAY -> skipBytes(in.readInt());
+			case STRING -> skipBytes(in.readUnsignedShort());
+			case LIST -> skipList(type(in.readByte()), in.readInt());
+			case COMPOUND -> skipCompound();
+			case INT_ARRAY -> skipBytes(4L * in.readInt());
+			case LONG_ARRAY -> skipBytes(8L * in.readInt());
+			default -> skipBytes(type.getWidth());
+		}
+	}
+
+	private void skipList(NBTType elementType, int size) throws IOException {
+		if (size < 0) throw new IOException("Negative list size " + size);
+		// lists of numbers are skipped at once
+		if (elementType.getWidth() >= 0) skipBytes((long) elementType.getWidth() * size);
+		else for (int i = 0; i < size; i++) skipPayload(elementType);
+	}
+
+	private void skipCompound() throws IOException {
+		byte id;
+		while ((id = in.readByte()) != 0) {
+			NBTType type = type(id);
+			skipBytes(in.readUnsignedShort());
+			skipPayload(type);
+		}
+	}
+
+	private void skipBytes(long count) throws IOException {
+		if (count < 0) throw new IOException("Negative length " + count);
+		while (count > 0) {
+			int skipped = in.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+			if (skipped <= 0) {
+				// skipBytes may stop early without reaching the end, read to tell both apart
+				in.readByte();
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
+
+	private static NBTType type(int id) throws IOException {
+		if (id < 0 || id > NBTType.LONG_ARRAY.ordinal()) throw new IOException("Unknown tag type " + id);
+		return NBTType.byId(id);
+	}
+
+	/**
+	 * @return the token of the current tag
+	 */
+	public @Nullable Token getToken() {
+		return token;
+	}
+
+	/**
+	 * @return the type of the current tag
+	 */
+	public @Nullable NBTType getType() {
+		return type;
+	}
+
+	/**
+	 * @return the name of the current tag, {@code null} for list elements
+	 */
+	public @Nullable String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the element type of the current list
+	 */
+	public @NotNull NBTType getListType() {
+		if (depth == 0 || !lists[depth - 1]) throw new IllegalStateException("Not inside a list");
+		return elementTypes[depth - 1];
+	}
+
+	/**
+	 * @return the elements of the current list not yet visited
+	 */
+	public int getListRemaining() {
+		if (depth == 0 || !lists[depth - 1]) throw new IllegalStateException("Not inside a list");
+		return remaining[depth - 1];
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	private void read(NBTType expected) {
+		if (token != Token.VALUE || type != expected) throw new IllegalStateException("The current tag is not a " + expected + " value");
+		if (!unread) throw new IllegalStateException("The value was already read");
+		unread = false;
+	}
+
+	public byte byteValue() throws IOException {
+		read(NBTType.BYTE);
+		return in.readByte();
+	}
+
+	public short shortValue() throws IOException {
+		read(NBTType.SHORT);
+		return in.readShort();
+	}
+
+	public int intValue() throws IOException {
+		read(NBTType.INT);
+		return in.readInt();
+	}
+
+	public long longValue() throws IOException {
+		read(NBTType.LONG);
+		return in.readLong();
+	}
+
+	public float floatValue() throws IOException {
+		read(NBTType.FLOAT);
+		return in.readFloat();
+	}
+
+	public double doubleValue() throws IOException {
+		read(NBTType.DOUBLE);
+		return in.readDouble();
+	}
+
+	public @NotNull String stringValue() throws IOException {
+		read(NBTType.STRING);
+		return in.readUTF();
+	}
+
+	public byte @NotNull [] byteArrayValue() throws IOException {
+		read(NBTType.BYTE_ARRAY);
+		byte[] value = new byte[length()];
+		in.readFully(value);
+		return value;
+	}
+
+	public int @NotNull [] intArrayValue() throws IOException {
+		read(NBTType.INT_ARRAY);
+		int[] value = new int[length()];
+		for (int i = 0; i < value.length; i++) value[i] = in.readInt();
+		return value;
+	}
+
+	public long @NotNull [] longArrayValue() throws IOException {
+		read(NBTType.LONG_ARRAY);
+		long[] value = new long[length()];
+		for (int i = 0; i < value.length; i++) value[i] = in.readLong();
+		return value;
+	}
+
+	/**
+	 * reads the current value of any type
+	 *
+	 * @return the boxed number, string or array
+	 */
+	public @NotNull Object value() throws IOException {
+		if (token != Token.VALUE) throw new IllegalStateException("The current tag is not a value");
+		return switch (type) {
+			case BYTE -> byteValue();
+			case SHORT -> shortValue();
+			case INT -> intValue();
+			case LONG -> longValue();
+			case FLOAT -> floatValue();
+			case DOUBLE -> doubleValue();
+			case STRING -> stringValue();
+			case BYTE_ARRAY -> byteArrayValue();
+			case INT_ARRAY -> intArrayValue();
+			case LONG_ARRAY -> longArrayValue();
+			default -> throw new IllegalStateException("Unexpected value type " + type);
+		};
+	}
+
+	private int length() throws IOException {
+		int length = in.readInt();
+		if (length < 0) throw new IOException("Negative array length " + length);
+		return length;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,48 @@
+package de.cyklon.spigotutils.nbt;
+
+/**
+ * the tag types of the nbt binary format, the ordinal is the type id
+ */
+public enum NBTType {
+
+	END(0),
+	BYTE(1),
+	SHORT(2),
+	INT(4),
+	LONG(8),
+	FLOAT(4),
+	DOUBLE(8),
+	BYTE_ARRAY(-1),
+	STRING(-1),
+	LIST(-1),
+	COMPOUND(-1),
+	INT_ARRAY(-1),
+	LONG_ARRAY(-1);
+
+	private static final NBTType[] TYPES = values();
+
+	private final int width;
+
+	NBTType(int width) {
+		this.width = width;
+	}
+
+	public byte getId() {
+		return (byte) ordinal();
+	}
+
+	/**
+	 * @return the size of the payload in bytes, -1 if it depends on the payload
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the id is unknown
+	 */
+	public static NBTType byId(int id) {
+		if (id < 0 || id >= TYPES.length) throw new IllegalArgumentException("Unknown tag type " + id);
+		return TYPES[id];
+	}
+}
@@ -0,0 +1,212 @@
+package de.cyklon.spigotutils.nbt;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * streaming writer for the nbt binary format, independent of the server.
+ * <p>
+ * Tags inside a compound need a name, list elements have none and must match the element type of the list
+ * <pre>{@code
+ * try (NBTWriter writer = NBTWriter.compressed(out)) {
+ *     writer.beginCompound("");
+ *     writer.writeInt("DataVersion", 3465);
+ *     writer.beginList("Lore", NBTType.STRING, 1);
+ *     writer.writeString(null, "line");
+ *     writer.endList();
+ *     writer.endCompound();
+ * }
+ * }</pre>
+ */
+public final class NBTWriter implements Closeable, Flushable {
+
+	private static final int MAX_DEPTH = 512;
+
+	private final DataOutputStream out;
+
+	// one frame per open compound or list, lists keep their element type and the elements still to write
+	private final boolean[] lists = new boolean[MAX_DEPTH];
+	private final NBTType[] elementTypes = new NBTType[MAX_DEPTH];
+	private final int[] remaining = new int[MAX_DEPTH];
+	private int depth;
+	private boolean rootWritten;
+
+	public NBTWriter(@NotNull OutputStream out) {
+		this.out = out instanceof DataOutputStream data ? data : new DataOutputStream(out);
+	}
+
+	/**
+	 * @return a writer producing gzip compressed data, the format of most nbt files
+	 */
+	public static @NotNull NBTWriter compressed(@NotNull OutputStream out) throws IOException {
+		return new NBTWriter(new BufferedOutputStream(new GZIPOutputStream(out)));
+	}
+
+	/**
+	 * writes the header of the next tag
+	 *
+	 * @param name the name, {@code null} for list elements
+	 */
+	private void header(NBTType type, String name) throws IOException {
+		if (depth == 0) {
+			if (rootWritten) throw new IllegalStateException("The root tag was already written");
+			rootWritten = true;
+			out.writeByte(type.getId());
+			out.writeUTF(name == null ? "" : name);
+			return;
+		}
+		int frame = depth - 1;
+		if (lists[frame]) {
+			if (name != null) throw new IllegalArgumentException("List elements have no name");
+			if (type != elementTypes[frame]) throw new IllegalArgumentException("The list only accepts " + elementTypes[frame] + " elements, not " + type);
+			if (remaining[frame] == 0) throw new IllegalStateException("The list is already full");
+			remaining[frame]--;
+			return;
+		}
+		if (name == null) throw new IllegalArgumentException("Tags in a compound need a name");
+		out.writeByte(type.getId());
+		out.writeUTF(name);
+	}
+
+	private void push(boolean list, NBTType elementType, int size) {
+		if (depth == MAX_DEPTH) throw new IllegalStateException("The nbt data is nested deeper than " + MAX_DEPTH);
+		lists[depth] = list;
+		elementTypes[depth] = elementType;
+		remaining[depth] = size;
+		depth++;
+	}
+
+	public void beginCompound(@Nullable String name) throws IOException {
+		header(NBTType.COMPOUND, name);
+		push(false, null, 0);
+	}
+
+	public void endCompound() throws IOException {
+		if (depth == 0 || lists[depth - 1]) throw new IllegalStateException("Not inside a compound");
+		out.writeByte(NBTType.END.getId());
+		depth--;
+	}
+
+	/**
+	 * @param size the number of elements that follow, lists are written with their size up front
+	 */
+	public void beginList(@Nullable String name, @NotNull NBTType elementType, int size) throws IOException {
+		if (size < 0) throw new IllegalArgumentException("Negative list size " + size);
+		if (elementType == NBTType.END && size > 0) throw new IllegalArgumentException("Only empty lists have no element type");
+		header(NBTType.LIST, name);
+		out.writeByte(elementType.getId());
+		out.writeInt(size);
+		push(true, elementType, size);
+	}
+
+	public void endList() {
+		if (depth == 0 || !lists[depth - 1]) throw new IllegalStateException("Not inside a list");
+		if (remaining[depth - 1] != 0) throw new IllegalStateException(remaining[depth - 1] + " list elements are missing");
+		depth--;
+	}
+
+	public void writeByte(@Nullable String name, byte value) throws IOException {
+		header(NBTType.BYTE, name);
+		out.writeByte(value);
+	}
+
+	public void writeShort(@Nullable String name, short value) throws IOException {
+		header(NBTType.SHORT, name);
+		out.writeShort(value);
+	}
+
+	public void writeInt(@Nullable String name, int value) throws IOException {
+		header(NBTType.INT, name);
+		out.writeInt(value);
+	}
+
+	public void writeLong(@Nullable String name, long value) throws IOException {
+		header(NBTType.LONG, name);
+		out.writeLong(value);
+	}
+
+	public void writeFloat(@Nullable String name, float value) throws IOException {
+		header(NBTType.FLOAT, name);
+		out.writeFloat(value);
+	}
+
+	public void writeDouble(@Nullable String name, double value) throws IOException {
+		header(NBTType.DOUBLE, name);
+		out.writeDouble(value);
+	}
+
+	public void writeString(@Nullable String name, @NotNull String value) throws IOException {
+		header(NBTType.STRING, name);
+		out.writeUTF(value);
+	}
+
+	public void writeByteArray(@Nullable String name, byte @NotNull [] value) throws IOException {
+		header(NBTType.BYTE_ARRAY, name);
+		out.writeInt(value.length);
+		out.write(value);
+	}
+
+	public void writeIntArray(@Nullable String name, int @NotNull [] value) throws IOException {
+		header(NBTType.INT_ARRAY, name);
+		out.writeInt(value.length);
+		for (int i : value) out.writeInt(i);
+	}
+
+	public void writeLongArray(@Nullable String name, long @NotNull [] value) throws IOException {
+		header(NBTType.LONG_ARRAY, name);
+		out.writeInt(value.length);
+		for (long l : value) out.writeLong(l);
+	}
+
+	/**
+	 * copies the current tag of the reader including its subtree, so data can be filtered while streaming
+	 */
+	public void copy(@NotNull NBTReader reader) throws IOException {
+		String name = depth > 0 && lists[depth - 1] ? null : reader.getName();
+		NBTReader.Token token = reader.getToken();
+		if (token == NBTReader.Token.START_COMPOUND) {
+			beginCompound(name);
+			// nested ends are consumed by the recursive calls
+			while (reader.next() != NBTReader.Token.END_COMPOUND) copy(reader);
+			endCompound();
+		} else if (token == NBTReader.Token.START_LIST) {
+			beginList(name, reader.getListType(), reader.getListRemaining());
+			while (reader.next() != NBTReader.Token.END_LIST) copy(reader);
+			endList();
+		} else if (token == NBTReader.Token.VALUE) {
+			switch (reader.getType()) {
+				case BYTE -> writeByte(name, reader.byteValue());
+				case SHORT -> writeShort(name, reader.shortValue());
+				case INT -> writeInt(name, reader.intValue());
+				case LONG -> writeLong(name, reader.longValue());
+				case FLOAT -> writeFloat(name, reader.floatValue());
+				case DOUBLE -> writeDouble(name, reader.doubleValue());
+				case STRING -> writeString(name, reader.stringValue());
+				case BYTE_ARRAY -> writeByteArray(name, reader.byteArrayValue());
+				case INT_ARRAY -> writeIntArray(name, reader.intArrayValue());
+				case LONG_ARRAY -> writeLongArray(name, reader.longArrayValue());
+				default -> throw new IllegalStateException("Unexpected value type " + reader.getType());
+			}
+		} else throw new IllegalStateException("Nothing to copy at " + token);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * @throws IllegalStateException if compounds or lists are still open
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (depth != 0) throw new IllegalStateException(depth + " compounds or lists are still open");
+		} finally {
+			out.close();
+		}
+	}
+}
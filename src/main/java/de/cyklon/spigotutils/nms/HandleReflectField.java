@@ -0,0 +1,147 @@
+package de.cyklon.spigotutils.nms;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * {@link ReflectField} backed by the handles of {@link MethodHandles.Lookup#unreflectGetter(Field)} and {@link MethodHandles.Lookup#unreflectSetter(Field)}
+ */
+final class HandleReflectField<D, R> implements ReflectField<D, R> {
+
+	private final Field field;
+	private final Class<D> declaringClass;
+	private final Class<R> returnType;
+	private final MethodHandle getter;
+	private final MethodHandle setter;
+	private final MethodHandle genericGetter;
+	private final MethodHandle genericSetter;
+	private final MethodHandle intGetter;
+	private final MethodHandle longGetter;
+	private final MethodHandle doubleGetter;
+
+	HandleReflectField(Field field, Class<D> declaringClass, Class<R> returnType) throws IllegalAccessException {
+		field.setAccessible(true);
+		this.field = field;
+		this.declaringClass = declaringClass;
+		this.returnType = returnType;
+
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		boolean isStatic = Modifier.isStatic(field.getModifiers());
+		MethodHandle getter = lookup.unreflectGetter(field);
+		if (isStatic) getter = MethodHandles.dropArguments(getter, 0, Object.class);
+		this.getter = getter.asType(MethodType.methodType(field.getType(), Object.class));
+		this.genericGetter = this.getter.asType(MethodType.methodType(Object.class, Object.class));
+		this.intGetter = primitiveGetter(int.class);
+		this.longGetter = primitiveGetter(long.class);
+		this.doubleGetter = primitiveGetter(double.class);
+
+		MethodHandle setter;
+		try {
+			setter = lookup.unreflectSetter(field);
+			if (isStatic) setter = MethodHandles.dropArguments(setter, 0, Object.class);
+			setter = setter.asType(MethodType.methodType(void.class, Object.class, field.getType()));
+		} catch (IllegalAccessException e) {
+			// final fields have no setter
+			setter = null;
+		}
+		this.setter = setter;
+		this.genericSetter = setter == null ? null : setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+	}
+
+	/**
+	 * @return the getter converted to the primitive type or {@code null} if the field type cannot be widened to it
+	 */
+	private MethodHandle primitiveGetter(Class<?> type) {
+		if (!field.getType().isPrimitive()) return null;
+		try {
+			return getter.asType(MethodType.methodType(type, Object.class));
+		} catch (WrongMethodTypeException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public Field getField() {
+		return field;
+	}
+
+	@Override
+	public Class<R> getReturnType() {
+		return returnType;
+	}
+
+	@Override
+	public Class<D> getDeclaringClass() {
+		return declaringClass;
+	}
+
+	@Override
+	public MethodHandle getGetter() {
+		return getter;
+	}
+
+	@Override
+	public MethodHandle getSetter() {
+		if (setter == null) throw new IllegalStateException("The field " + field.getName() + " is final");
+		return setter;
+	}
+
+	@Override
+	public Object get(Object obj) {
+		try {
+			return genericGetter.invokeExact(obj);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public void set(Object obj, Object value) {
+		if (genericSetter == null) throw new IllegalStateException("The field " + field.getName() + " is final");
+		try {
+			genericSetter.invokeExact(obj, value);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public int getInt(Object obj) {
+		if (intGetter == null) throw new IllegalStateException("The field " + field.getName() + " is not an int");
+		try {
+			return (int) intGetter.invokeExact(obj);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public long getLong(Object obj) {
+		if (longGetter == null) throw new IllegalStateException("The field " + field.getName() + " is not a long");
+		try {
+			return (long) longGetter.invokeExact(obj);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public double getDouble(Object obj) {
+		if (doubleGetter == null) throw new IllegalStateException("The field " + field.getName() + " is not a double");
+		try {
+			return (double) doubleGetter.invokeExact(obj);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	private static RuntimeException rethrow(Throwable e) {
+		if (e instanceof RuntimeException runtimeException) return runtimeException;
+		if (e instanceof Error error) throw error;
+		return new RuntimeException(e);
+	}
+}
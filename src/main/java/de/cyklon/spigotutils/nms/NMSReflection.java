@@ -9,9 +9,9 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 
 public class NMSReflection {
@@ -27,27 +27,34 @@ public class NMSReflection {
 
 	private static volatile Object theUnsafe;
 
+	/**
+	 * resolved methods and fields, every member is only looked up and unreflected once
+	 */
+	private static final Map<MemberKey, ReflectMethod<?, ?>> METHODS = new ConcurrentHashMap<>();
+	private static final Map<MemberKey, ReflectField<?, ?>> FIELDS = new ConcurrentHashMap<>();
+
 	@SuppressWarnings("unchecked")
 	public static <D, R> R invokeMethod(D obj, String methodName, Class<R> returnType, Class<?>[] paramTypes, Object... params) {
-		List<Class<?>> types = new ArrayList<>();
-		if (paramTypes==null) paramTypes = new Class<?>[0];
-		for (int i = 0; i < params.length; i++) {
-			if (i<paramTypes.length && paramTypes[i]!=null) types.add(paramTypes[i]);
-			else types.add(params[i].getClass());
-		}
-		ReflectMethod<D, R> method = getMethod((Class<D>) obj.getClass(), methodName, returnType, types.toArray(Class[]::new));
+		ReflectMethod<D, R> method = getMethod((Class<D>) obj.getClass(), methodName, returnType, paramTypes(paramTypes, params));
 		return invokeMethod(method, obj, params);
 	}
 
 	public static <D, R> R invokeStaticMethod(Class<D> clazz, String methodName, Class<R> returnType, Class<?>[] paramTypes, Object... params) {
-		List<Class<?>> types = new ArrayList<>();
-		if (paramTypes==null) paramTypes = new Class<?>[0];
+		ReflectMethod<D, R> method = getMethod(clazz, methodName, returnType, paramTypes(paramTypes, params));
+		return invokeStaticMethod(method, params);
+	}
+
+	/**
+	 * fills the missing parameter types with the classes of the parameters
+	 */
+	private static Class<?>[] paramTypes(Class<?>[] paramTypes, Object[] params) {
+		if (paramTypes == null) paramTypes = new Class<?>[0];
+		Class<?>[] types = new Class<?>[params.length];
 		for (int i = 0; i < params.length; i++) {
-			if (i<paramTypes.length && paramTypes[i]!=null) types.add(paramTypes[i]);
-			else types.add(params[i].getClass());
+			if (i<paramTypes.length && paramTypes[i]!=null) types[i] = paramTypes[i];
+			else types[i] = params[i].getClass();
 		}
-		ReflectMethod<D, R> method = getMethod(clazz, methodName, returnType, types.toArray(Class[]::new));
-		return invokeStaticMethod(method, params);
+		return types;
 	}
 
 	public static <D, R> R invokeMethod(ReflectMethod<D, R> method, D obj, Object... params) {
@@ -55,14 +62,24 @@ public class NMSReflection {
 	}
 
 	public static <R> R invokeMethodWithInconstantClass(ReflectMethod<?, R> method, Object obj, Object... params) {
-		return method.getReturnType().cast(invokeInconstantMethod(method, obj, params));
+		return cast(method.getReturnType(), invokeInconstantMethod(method, obj, params));
+	}
+
+	/**
+	 * {@link Class#cast(Object)} that also accepts primitive types like {@code int.class} for their boxed values
+	 */
+	@SuppressWarnings("unchecked")
+	private static <R> R cast(Class<R> type, Object value) {
+		return type.isPrimitive() ? (R) value : type.cast(value);
 	}
 
 
 	public static Object invokeInconstantMethod(ReflectMethod<?, ?> method, Object obj, Object... params) {
 		try {
-			return method.getMethod().invoke(obj, params);
-		} catch (IllegalAccessException | InvocationTargetException e) {
+			return method.getHandle().invokeExact(obj, params);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
 			throw new RuntimeException(e);
 		}
 	}
@@ -71,10 +88,25 @@ public class NMSReflection {
 		return invokeMethod(method, null, params);
 	}
 
+	/**
+	 * the method is resolved once per class, name, return type and parameter types, following calls return the cached instance
+	 */
+	@SuppressWarnings("unchecked")
 	public static <D, R> ReflectMethod<D, R> getMethod(final Class<D> declaringClass, String methodName, final Class<R> returnType, Class<?>... paramTypes) {
+		MemberKey key = new MemberKey(declaringClass, methodName, returnType, paramTypes);
+		ReflectMethod<?, ?> cached = METHODS.get(key);
+		if (cached == null) cached = METHODS.computeIfAbsent(key, k -> resolveMethod(declaringClass, methodName, returnType, paramTypes));
+		return (ReflectMethod<D, R>) cached;
+	}
+
+	private static <D, R> ReflectMethod<D, R> resolveMethod(final Class<D> declaringClass, String methodName, final Class<R> returnType, Class<?>... paramTypes) {
 		try {
 			final Method method = declaringClass.getDeclaredMethod(methodName, paramTypes);
 			method.setAccessible(true);
+			MethodHandle handle = MethodHandles.lookup().unreflect(method);
+			if (Modifier.isStatic(method.getModifiers())) handle = MethodHandles.dropArguments(handle, 0, Object.class);
+			// normalize to (Object, Object[])Object, so it can be called with invokeExact
+			final MethodHandle invoker = handle.asType(MethodType.genericMethodType(paramTypes.length + 1)).asSpreader(Object[].class, paramTypes.length);
 			return new ReflectMethod<>() {
 				@Override
 				public Class<R> getReturnType() {
@@ -86,12 +118,17 @@ public class NMSReflection {
 					return method;
 				}
 
+				@Override
+				public MethodHandle getHandle() {
+					return invoker;
+				}
+
 				@Override
 				public Class<D> getDeclaringClass() {
 					return declaringClass;
 				}
 			};
-		} catch (NoSuchMethodException e) {
+		} catch (NoSuchMethodException | IllegalAccessException e) {
 			throw new RuntimeException(e);
 		}
 	}
@@ -101,7 +138,7 @@ public class NMSReflection {
 	}
 
 	public static <R> R getValueWithInconstantClass(ReflectField<?, R> field, Object obj) {
-		return field.getReturnType().cast(getInconstantValue(field, obj));
+		return cast(field.getReturnType(), getInconstantValue(field, obj));
 	}
 
 	public static Object getStaticInconstantValue(ReflectField<?, ?> field) {
@@ -109,11 +146,7 @@ public class NMSReflection {
 	}
 
 	public static Object getInconstantValue(ReflectField<?, ?> field, Object obj) {
-		try {
-			return field.getReturnType().cast(field.getField().get(obj));
-		} catch (IllegalAccessException e) {
-			throw new RuntimeException(e);
-		}
+		return field.get(obj);
 	}
 
 	public static <D, R> R getStaticValue(ReflectField<D, R> field) {
@@ -121,30 +154,24 @@ public class NMSReflection {
 	}
 
 	public static <D, R> R getValue(ReflectField<D, R> field, Object obj) {
-		return field.getReturnType().cast(getInconstantValue(field, obj));
+		return cast(field.getReturnType(), getInconstantValue(field, obj));
 	}
 
+	/**
+	 * the field is resolved once per class, name and type, following calls return the cached instance
+	 */
+	@SuppressWarnings("unchecked")
 	public static <D, R> ReflectField<D, R> getField(final Class<D> declaringClass, String fieldName, final Class<R> returnType) {
-		try {
-			final Field field = declaringClass.getDeclaredField(fieldName);
-			field.setAccessible(true);
-			return new ReflectField<>() {
-				@Override
-				public Field getField() {
-					return field;
-				}
-
-				@Override
-				public Class<R> getReturnType() {
-					return returnType;
-				}
+		MemberKey key = new MemberKey(declaringClass, fieldName, returnType, null);
+		ReflectField<?, ?> cached = FIELDS.get(key);
+		if (cached == null) cached = FIELDS.computeIfAbsent(key, k -> resolveField(declaringClass, fieldName, returnType));
+		return (ReflectField<D, R>) cached;
+	}
 
-				@Override
-				public Class<D> getDeclaringClass() {
-					return declaringClass;
-				}
-			};
-		} catch (NoSuchFieldException e) {
+	private static <D, R> ReflectField<D, R> resolveField(final Class<D> declaringClass, String fieldName, final Class<R> returnType) {
+		try {
+			return new HandleReflectField<>(declaringClass.getDeclaredField(fieldName), declaringClass, returnType);
+		} catch (NoSuchFieldException | IllegalAccessException e) {
 			throw new RuntimeException(e);
 		}
 	}
@@ -154,14 +181,8 @@ public class NMSReflection {
 	}
 
 	public static <T> T newInstance(Class<T> clazz, Class<?>[] paramTypes, Object... params) {
-		List<Class<?>> types = new ArrayList<>();
-		if (paramTypes==null) paramTypes = new Class<?>[0];
-		for (int i = 0; i < params.length; i++) {
-			if (i<paramTypes.length && paramTypes[i]!=null) types.add(paramTypes[i]);
-			else types.add(params[i].getClass());
-		}
 		try {
-			return getConstructor(clazz, types.toArray(Class[]::new)).newInstance(params);
+			return getConstructor(clazz, paramTypes(paramTypes, params)).newInstance(params);
 		} catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
 			throw new RuntimeException(e);
 		}
@@ -256,4 +277,35 @@ public class NMSReflection {
 		return () -> allocateMethod.invoke(theUnsafe, packetClass);
 	}
 
+	private static final class MemberKey {
+
+		private final Class<?> declaringClass;
+		private final String name;
+		private final Class<?> type;
+		private final Class<?>[] paramTypes;
+		private final int hash;
+
+		private MemberKey(Class<?> declaringClass, String name, Class<?> type, Class<?>[] paramTypes) {
+			this.declaringClass = declaringClass;
+			this.name = name;
+			this.type = type;
+			this.paramTypes = paramTypes;
+			this.hash = 31 * (31 * (31 * declaringClass.hashCode() + name.hashCode()) + Objects.hashCode(type)) + Arrays.hashCode(paramTypes);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof MemberKey other
+					&& declaringClass == other.declaringClass
+					&& type == other.type
+					&& name.equals(other.name)
+					&& Arrays.equals(paramTypes, other.paramTypes);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
 }
@@ -0,0 +1,177 @@
+package de.cyklon.spigotutils.nms;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static de.cyklon.spigotutils.nms.NMSReflection.nmsClass;
+import static de.cyklon.spigotutils.nms.NMSReflection.obcClass;
+
+/**
+ * caches the nms connection of every online player, so sending a packet is a map lookup and a single invocation.
+ * <p>
+ * Connections are cached on join and evicted on quit once a plugin called {@link #register(Plugin)},
+ * without a registered plugin they are resolved on every call
+ */
+public final class PlayerConnectionCache {
+
+	private static final MethodHandle PLAYER_GET_HANDLE;
+	private static final MethodHandle PLAYER_CONNECTION;
+	private static final MethodHandle SEND_PACKET;
+
+	private static final Map<UUID, Object> CONNECTIONS = new ConcurrentHashMap<>();
+	private static volatile Plugin registered;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			Class<?> craftPlayerClass = obcClass("entity.CraftPlayer");
+			Class<?> entityPlayerClass = nmsClass("server.level", "EntityPlayer");
+			Class<?> playerConnectionClass = nmsClass("server.network", "PlayerConnection");
+			Class<?> packetClass = nmsClass("network.protocol", "Packet");
+			Field playerConnectionField = Arrays.stream(entityPlayerClass.getFields())
+					.filter(field -> field.getType().isAssignableFrom(playerConnectionClass))
+					.findFirst().orElseThrow(NoSuchFieldException::new);
+			Method sendPacketMethod = Stream.concat(
+							Arrays.stream(playerConnectionClass.getSuperclass().getMethods()),
+							Arrays.stream(playerConnectionClass.getMethods())
+					)
+					.filter(m -> m.getParameterCount() == 1 && m.getParameterTypes()[0] == packetClass)
+					.findFirst().orElseThrow(NoSuchMethodException::new);
+
+			PLAYER_GET_HANDLE = lookup.findVirtual(craftPlayerClass, "getHandle", MethodType.methodType(entityPlayerClass))
+					.asType(MethodType.methodType(Object.class, Player.class));
+			PLAYER_CONNECTION = lookup.unreflectGetter(playerConnectionField)
+					.asType(MethodType.methodType(Object.class, Object.class));
+			SEND_PACKET = lookup.unreflect(sendPacketMethod)
+					.asType(MethodType.methodType(void.class, Object.class, Object.class));
+		} catch (Throwable t) {
+			throw new ExceptionInInitializerError(t);
+		}
+	}
+
+	private PlayerConnectionCache() {}
+
+	/**
+	 * starts caching the connections, only the first plugin registers the listener
+	 */
+	public static synchronized void register(@NotNull Plugin plugin) {
+		if (registered != null && registered.isEnabled()) return;
+		CONNECTIONS.clear();
+		Bukkit.getPluginManager().registerEvents(new ConnectionListener(), plugin);
+		registered = plugin;
+	}
+
+	/**
+	 * @return the connection or {@code null} if the player is offline
+	 */
+	public static @Nullable Object getConnection(@NotNull UUID uuid) {
+		Object connection = cached(uuid);
+		if (connection != null) return connection;
+		Player player = Bukkit.getPlayer(uuid);
+		return player == null ? null : getConnection(player);
+	}
+
+	/**
+	 * @return the connection or {@code null} if the player is offline
+	 */
+	public static @Nullable Object getConnection(@NotNull Player player) {
+		Object connection = cached(player.getUniqueId());
+		if (connection != null) return connection;
+		if (!player.isOnline()) return null;
+		connection = resolve(player);
+		// only cache while the quit listener evicts
+		if (isRegistered()) CONNECTIONS.put(player.getUniqueId(), connection);
+		return connection;
+	}
+
+	/**
+	 * @return false if the player is offline
+	 */
+	public static boolean send(@NotNull UUID uuid, @NotNull Object packet) {
+		Object connection = getConnection(uuid);
+		if (connection == null) return false;
+		send0(connection, packet);
+		return true;
+	}
+
+	/**
+	 * @return false if the player is offline
+	 */
+	public static boolean send(@NotNull Player player, @NotNull Object packet) {
+		Object connection = getConnection(player);
+		if (connection == null) return false;
+		send0(connection, packet);
+		return true;
+	}
+
+	private static void send0(Object connection, Object packet) {
+		try {
+			SEND_PACKET.invokeExact(connection, packet);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException("Unable to send packet", t);
+		}
+	}
+
+	private static Object resolve(Player player) {
+		try {
+			return (Object) PLAYER_CONNECTION.invokeExact((Object) PLAYER_GET_HANDLE.invokeExact(player));
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException("Unable to get the connection of '" + player.getName() + "'", t);
+		}
+	}
+
+	/**
+	 * @return the cached connection, the cache is dropped once the registering plugin is disabled and its quit listener no longer evicts
+	 */
+	private static Object cached(UUID uuid) {
+		if (!isRegistered()) {
+			if (!CONNECTIONS.isEmpty()) CONNECTIONS.clear();
+			return null;
+		}
+		return CONNECTIONS.get(uuid);
+	}
+
+	private static boolean isRegistered() {
+		Plugin plugin = registered;
+		return plugin != null && plugin.isEnabled();
+	}
+
+	private static final class ConnectionListener implements Listener {
+
+		@EventHandler(priority = EventPriority.LOWEST)
+		public void onJoin(PlayerJoinEvent event) {
+			Player player = event.getPlayer();
+			CONNECTIONS.put(player.getUniqueId(), resolve(player));
+		}
+
+		// evict last, so quit listeners can still send packets
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onQuit(PlayerQuitEvent event) {
+			CONNECTIONS.remove(event.getPlayer().getUniqueId());
+		}
+	}
+
+}
@@ -1,9 +1,42 @@
 package de.cyklon.spigotutils.nms;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
 
 public interface ReflectField<D, R> extends ReflectEntity<D, R> {
 
     Field getField();
 
+    /**
+     * @return a handle of the type {@code (Object)T} where T is the declared type of the field, the receiver is ignored for static fields
+     */
+    MethodHandle getGetter();
+
+    /**
+     * @return a handle of the type {@code (Object, T)void} where T is the declared type of the field, the receiver is ignored for static fields
+     * @throws IllegalStateException if the field is final
+     */
+    MethodHandle getSetter();
+
+    Object get(Object obj);
+
+    void set(Object obj, Object value);
+
+    /**
+     * reads the field without boxing
+     *
+     * @throws IllegalStateException if the field type cannot be widened to int
+     */
+    int getInt(Object obj);
+
+    /**
+     * @see #getInt(Object)
+     */
+    long getLong(Object obj);
+
+    /**
+     * @see #getInt(Object)
+     */
+    double getDouble(Object obj);
+
 }
@@ -1,7 +1,13 @@
 package de.cyklon.spigotutils.nms;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 
 public interface ReflectMethod<D, R> extends ReflectEntity<D, R> {
     Method getMethod();
+
+    /**
+     * @return a handle of the type {@code (Object, Object[])Object}, the receiver is ignored for static methods
+     */
+    MethodHandle getHandle();
 }
@@ -0,0 +1,13 @@
+package de.cyklon.spigotutils.persistence;
+
+/**
+ * a container whose follow-up work (saving, applying an item meta) can be deferred until a batch of mutations is done.
+ * Batches can be nested, the work runs once when the outermost batch ends
+ */
+interface Batchable {
+
+    void beginBatch();
+
+    void endBatch();
+
+}
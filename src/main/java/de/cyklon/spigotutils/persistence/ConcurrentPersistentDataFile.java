@@ -0,0 +1,34 @@
+package de.cyklon.spigotutils.persistence;
+
+import java.io.File;
+import java.time.Duration;
+
+/**
+ * a {@link PersistentDataFile} that can be shared between the main thread and async tasks.
+ * <p>
+ * Values are kept in a {@link java.util.concurrent.ConcurrentHashMap}, so reads and writes never take a lock.
+ * Saving copies the data optimistically and retries when a write happened during the copy,
+ * so a snapshot never contains half of a bulk change like {@link #readFromBytes(byte[], boolean)}.
+ * Only {@link SaveMode#JOURNAL} serializes writes, to keep the journal in the same order as the data.
+ * <p>
+ * Defaults to {@link SaveMode#WRITE_BEHIND}, so the calling thread never waits for the disk either.
+ */
+public class ConcurrentPersistentDataFile extends PersistentDataFile {
+
+    public ConcurrentPersistentDataFile(File file) {
+        this(file, SaveMode.WRITE_BEHIND);
+    }
+
+    public ConcurrentPersistentDataFile(File file, SaveMode saveMode) {
+        this(file, saveMode, DataFormat.GZIP);
+    }
+
+    public ConcurrentPersistentDataFile(File file, SaveMode saveMode, DataFormat format) {
+        this(file, saveMode, format, DEFAULT_FLUSH_INTERVAL, DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    public ConcurrentPersistentDataFile(File file, SaveMode saveMode, DataFormat format, Duration flushInterval, int flushThreshold) {
+        super(file, saveMode, format, flushInterval, flushThreshold, true);
+    }
+
+}
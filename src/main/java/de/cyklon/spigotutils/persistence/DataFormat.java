@@ -0,0 +1,18 @@
+package de.cyklon.spigotutils.persistence;
+
+public enum DataFormat {
+
+    /**
+     * gzip compressed nbt, the whole file is read and decoded when it is opened
+     */
+    GZIP,
+    /**
+     * uncompressed nbt read through a {@link java.nio.MappedByteBuffer}.
+     * <p>
+     * Opening only indexes the entries, every value is decoded on its first access.
+     * Trades disk space for cpu, use it for hot local data.
+     * Saving replaces the file while it is still mapped, which is not supported by every platform (e.g. windows)
+     */
+    MAPPED
+
+}
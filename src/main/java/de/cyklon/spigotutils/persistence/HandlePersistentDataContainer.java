@@ -1,5 +1,6 @@
 package de.cyklon.spigotutils.persistence;
 
+import net.minecraft.nbt.NBTBase;
 import org.bukkit.NamespacedKey;
 import org.bukkit.persistence.PersistentDataAdapterContext;
 import org.bukkit.persistence.PersistentDataContainer;
@@ -10,20 +11,43 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.util.Set;
 
-class HandlePersistentDataContainer implements PersistentDataContainer {
+class HandlePersistentDataContainer implements PersistentDataContainer, Batchable, RawDataContainer {
 
 	private final PersistentDataContainer container;
 	private final Runnable handler;
+	private final RawDataContainer raw;
+	private int batchDepth;
+	private boolean changed;
 
 	HandlePersistentDataContainer(@NotNull PersistentDataContainer container, @NotNull Runnable handler) {
 		this.container = container;
 		this.handler = handler;
+		this.raw = RawDataContainer.of(container);
+	}
+
+	/**
+	 * @return false if the wrapped container has no raw view
+	 */
+	boolean isRaw() {
+		return raw != null;
+	}
+
+	@Override
+	public NBTBase getTag(NamespacedKey key) {
+		return raw.getTag(key);
+	}
+
+	@Override
+	public boolean compareAndSetTag(NamespacedKey key, NBTBase expected, NBTBase tag) {
+		if (!raw.compareAndSetTag(key, expected, tag)) return false;
+		changed();
+		return true;
 	}
 
 	@Override
 	public <T, Z> void set(@NotNull NamespacedKey key, @NotNull PersistentDataType<T, Z> type, @NotNull Z value) {
 		container.set(key, type, value);
-		handler.run();
+		changed();
 	}
 
 	@Override
@@ -49,7 +73,30 @@ class HandlePersistentDataContainer implements PersistentDataContainer {
 	@Override
 	public void remove(@NotNull NamespacedKey key) {
 		container.remove(key);
-		handler.run();
+		changed();
+	}
+
+	private void changed() {
+		if (batchDepth == 0) handler.run();
+		else changed = true;
+	}
+
+	@Override
+	public void beginBatch() {
+		if (container instanceof Batchable batchable) batchable.beginBatch();
+		batchDepth++;
+	}
+
+	@Override
+	public void endBatch() {
+		try {
+			if (--batchDepth == 0 && changed) {
+				changed = false;
+				handler.run();
+			}
+		} finally {
+			if (container instanceof Batchable batchable) batchable.endBatch();
+		}
 	}
 
 	@Override
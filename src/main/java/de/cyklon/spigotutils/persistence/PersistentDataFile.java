@@ -1,6 +1,7 @@
 package de.cyklon.spigotutils.persistence;
 
 import com.google.common.base.Preconditions;
+import de.cyklon.spigotutils.nbt.NBTHash;
 import net.minecraft.nbt.NBTBase;
 import net.minecraft.nbt.NBTCompressedStreamTools;
 import net.minecraft.nbt.NBTTagCompound;
@@ -14,27 +15,117 @@ import org.bukkit.persistence.PersistentDataType;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
 
-public class PersistentDataFile implements PersistentDataContainer {
+public class PersistentDataFile implements PersistentDataContainer, Batchable, RawDataContainer {
+
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(5);
+    public static final int DEFAULT_FLUSH_THRESHOLD = 64;
+    private static final int OPTIMISTIC_SNAPSHOTS = 16;
+    /**
+     * the delay between a journaled mutation and the fsync that commits it together with the mutations of the same window
+     */
+    private static final long JOURNAL_SYNC_INTERVAL = 50;
 
     private final Map<String, NBTBase> customDataTags;
+    /**
+     * entries of a {@link DataFormat#MAPPED} file that were not decoded yet
+     */
+    private final Map<String, ByteBuffer> encodedTags;
     private final CraftPersistentDataTypeRegistry registry;
     private final CraftPersistentDataAdapterContext adapterContext;
     private final File file;
-    private final boolean autoSave;
+    private final DataFormat format;
+    private final SaveMode saveMode;
+    private final long flushInterval;
+    private final int flushThreshold;
+    private final PersistentDataJournal journal;
+    private boolean staleJournal;
+    /**
+     * keys mutated since the last journal sync, the background writer appends their current tags and forces the journal once
+     */
+    private final Set<String> journalPending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean journalScheduled = new AtomicBoolean();
+
+    private final Object ioLock = new Object();
+    private final AtomicInteger dirtyCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicInteger batchDepth = new AtomicInteger();
+
+    /**
+     * incremented after every change of the key set, the cached key set is only valid for the version it was built for
+     */
+    private final AtomicInteger keyVersion = new AtomicInteger();
+    private volatile KeySet keySet;
+
+    /**
+     * the entry hashes, {@code null} until the content hash is asked for. Afterwards every write rehashes the entry it touched
+     */
+    private volatile ContentHash contentHash;
+
+    /**
+     * {@code true} for a {@link ConcurrentPersistentDataFile}, mutations are then guarded by the write counters and the shared snapshot lock instead of the monitor
+     */
+    private final boolean concurrent;
+    private final AtomicLong writesStarted = new AtomicLong();
+    private final AtomicLong writesFinished = new AtomicLong();
+    /**
+     * shared by the writers of a concurrent file, only taken exclusively by a snapshot whose optimistic copies kept failing
+     */
+    private final StampedLock snapshotLock = new StampedLock();
 
     public PersistentDataFile(File file) {
         this(file, true);
     }
 
     public PersistentDataFile(File file, boolean autoSave) {
+        this(file, autoSave ? SaveMode.IMMEDIATE : SaveMode.MANUAL);
+    }
+
+    public PersistentDataFile(File file, SaveMode saveMode) {
+        this(file, saveMode, DataFormat.GZIP);
+    }
+
+    public PersistentDataFile(File file, SaveMode saveMode, DataFormat format) {
+        this(file, saveMode, format, DEFAULT_FLUSH_INTERVAL, DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    public PersistentDataFile(File file, SaveMode saveMode, Duration flushInterval, int flushThreshold) {
+        this(file, saveMode, DataFormat.GZIP, flushInterval, flushThreshold);
+    }
+
+    /**
+     * @param flushInterval the maximum time a mutation stays unwritten (or uncompacted) in {@link SaveMode#WRITE_BEHIND} and {@link SaveMode#JOURNAL} mode
+     * @param flushThreshold the amount of mutations after which a flush is triggered without waiting for the interval
+     */
+    public PersistentDataFile(File file, SaveMode saveMode, DataFormat format, Duration flushInterval, int flushThreshold) {
+        this(file, saveMode, format, flushInterval, flushThreshold, false);
+    }
+
+    PersistentDataFile(File file, SaveMode saveMode, DataFormat format, Duration flushInterval, int flushThreshold, boolean concurrent) {
         Preconditions.checkArgument(file != null, "The File cannot be null");
-        this.customDataTags = new HashMap<>();
+        Preconditions.checkArgument(saveMode != null, "The SaveMode cannot be null");
+        Preconditions.checkArgument(format != null, "The DataFormat cannot be null");
+        Preconditions.checkArgument(flushInterval != null && !flushInterval.isNegative(), "The flush interval cannot be null or negative");
+        Preconditions.checkArgument(flushThreshold > 0, "The flush threshold must be positive");
+        this.concurrent = concurrent;
+        this.customDataTags = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.encodedTags = format != DataFormat.MAPPED ? null : concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
         this.registry = new CraftPersistentDataTypeRegistry();
         this.adapterContext = new CraftPersistentDataAdapterContext(this.registry);
         this.file = file;
-        this.autoSave = autoSave;
+        this.format = format;
+        this.saveMode = saveMode;
+        this.flushInterval = flushInterval.toMillis();
+        this.flushThreshold = flushThreshold;
+        this.journal = new PersistentDataJournal(file);
         update();
     }
 
@@ -42,21 +133,52 @@ public class PersistentDataFile implements PersistentDataContainer {
         Preconditions.checkArgument(key != null, "The NamespacedKey key cannot be null");
         Preconditions.checkArgument(type != null, "The provided type cannot be null");
         Preconditions.checkArgument(value != null, "The provided value cannot be null");
-        this.customDataTags.put(key.toString(), this.registry.wrap(type.getPrimitiveType(), type.toPrimitive(value, this.adapterContext)));
-        if (autoSave) save();
+        NBTBase tag = this.registry.wrap(type.getPrimitiveType(), type.toPrimitive(value, this.adapterContext));
+        write(PersistentDataKeys.toRaw(key), tag);
+        changed();
+    }
+
+    /**
+     * sets the value only if the current value equals the expected one, compared on the nbt level
+     *
+     * @param expected the expected value, {@code null} if the key is expected to be absent
+     * @return false if the current value did not match
+     */
+    public <T, Z> boolean compareAndSet(NamespacedKey key, PersistentDataType<T, Z> type, Z expected, Z value) {
+        Preconditions.checkArgument(key != null, "The NamespacedKey key cannot be null");
+        Preconditions.checkArgument(type != null, "The provided type cannot be null");
+        Preconditions.checkArgument(value != null, "The provided value cannot be null");
+        NBTBase expectedTag = expected == null ? null : this.registry.wrap(type.getPrimitiveType(), type.toPrimitive(expected, this.adapterContext));
+        NBTBase tag = this.registry.wrap(type.getPrimitiveType(), type.toPrimitive(value, this.adapterContext));
+        return compareAndSetTag(key, expectedTag, tag);
+    }
+
+    @Override
+    public NBTBase getTag(NamespacedKey key) {
+        return tag(PersistentDataKeys.toRaw(key));
+    }
+
+    @Override
+    public boolean compareAndSetTag(NamespacedKey key, NBTBase expected, NBTBase tag) {
+        String raw = PersistentDataKeys.toRaw(key);
+        // decode a mapped entry first, the comparison only looks at decoded values
+        tag(raw);
+        if (!compareAndWrite(raw, expected, tag)) return false;
+        changed();
+        return true;
     }
 
     public <T, Z> boolean has(NamespacedKey key, PersistentDataType<T, Z> type) {
         Preconditions.checkArgument(key != null, "The NamespacedKey key cannot be null");
         Preconditions.checkArgument(type != null, "The provided type cannot be null");
-        NBTBase value = (NBTBase)this.customDataTags.get(key.toString());
+        NBTBase value = tag(PersistentDataKeys.toRaw(key));
         return value == null ? false : this.registry.isInstanceOf(type.getPrimitiveType(), value);
     }
 
     public <T, Z> Z get(NamespacedKey key, PersistentDataType<T, Z> type) {
         Preconditions.checkArgument(key != null, "The NamespacedKey key cannot be null");
         Preconditions.checkArgument(type != null, "The provided type cannot be null");
-        NBTBase value = (NBTBase)this.customDataTags.get(key.toString());
+        NBTBase value = tag(PersistentDataKeys.toRaw(key));
         return value == null ? null : type.fromPrimitive(this.registry.extract(type.getPrimitiveType(), value), this.adapterContext);
     }
 
@@ -65,26 +187,44 @@ public class PersistentDataFile implements PersistentDataContainer {
         return z != null ? z : defaultValue;
     }
 
+    /**
+     * @return a modifiable copy of the keys, like the container of the server returns. Use {@link #keys()} to avoid the copy
+     */
     public Set<NamespacedKey> getKeys() {
+        return new HashSet<>(keys());
+    }
+
+    /**
+     * @return an unmodifiable view of the keys, it is cached until the next set or remove changes the keys
+     */
+    public Set<NamespacedKey> keys() {
+        int version = keyVersion.get();
+        KeySet cached = this.keySet;
+        if (cached != null && cached.version() == version) return cached.keys();
+
         Set<NamespacedKey> keys = new HashSet<>();
         this.customDataTags.keySet().forEach((key) -> {
-            String[] keyData = key.split(":", 2);
-            if (keyData.length == 2) {
-                keys.add(new NamespacedKey(keyData[0], keyData[1]));
-            }
-
+            NamespacedKey namespacedKey = PersistentDataKeys.fromRaw(key);
+            if (namespacedKey != null) keys.add(namespacedKey);
         });
-        return keys;
+        if (this.encodedTags != null) {
+            this.encodedTags.keySet().forEach((key) -> {
+                NamespacedKey namespacedKey = PersistentDataKeys.fromRaw(key);
+                if (namespacedKey != null) keys.add(namespacedKey);
+            });
+        }
+        Set<NamespacedKey> result = Collections.unmodifiableSet(keys);
+        this.keySet = new KeySet(version, result);
+        return result;
     }
 
     public void remove(NamespacedKey key) {
         Preconditions.checkArgument(key != null, "The NamespacedKey key cannot be null");
-        this.customDataTags.remove(key.toString());
-        if (autoSave) save();
+        if (write(PersistentDataKeys.toRaw(key), null)) changed();
     }
 
     public boolean isEmpty() {
-        return this.customDataTags.isEmpty();
+        return this.customDataTags.isEmpty() && (this.encodedTags == null || this.encodedTags.isEmpty());
     }
 
     public @NotNull PersistentDataAdapterContext getAdapterContext() {
@@ -92,39 +232,381 @@ public class PersistentDataFile implements PersistentDataContainer {
     }
 
     public boolean equals(Object obj) {
+        if (obj instanceof PersistentDataFile other) {
+            if (other == this) return true;
+            return Objects.equals(rawTags(), other.rawTags());
+        }
         if (!(obj instanceof CraftPersistentDataContainer)) {
             return false;
         } else {
             Map<String, NBTBase> theirRawMap = ((CraftPersistentDataContainer)obj).getRaw();
+            decodeAll();
             return Objects.equals(this.customDataTags, theirRawMap);
         }
     }
 
     public int hashCode() {
+        decodeAll();
         int hashCode = 3;
         hashCode += this.customDataTags.hashCode();
         return hashCode;
     }
 
+    /**
+     * 64 bit hash of the content, independent of the key order and of whether mapped entries are decoded.
+     * The first call hashes every entry, afterwards each write only rehashes the entry it touched. Loading or clearing
+     * the file drops the entry hashes
+     */
+    public long contentHash() {
+        ContentHash hash = this.contentHash;
+        if (hash == null) {
+            synchronized (this) {
+                hash = this.contentHash;
+                if (hash == null) {
+                    // published first, so writes running while the entries are hashed rehash their own key
+                    this.contentHash = hash = new ContentHash();
+                    Set<String> keys = new HashSet<>(this.customDataTags.keySet());
+                    if (this.encodedTags != null) keys.addAll(this.encodedTags.keySet());
+                    for (String key : keys) {
+                        // decoded up front, the rehash itself must not take the snapshot lock while it holds the entry
+                        tag(key);
+                        rehash(hash, key);
+                    }
+                }
+            }
+        }
+        return hash.sum.get();
+    }
+
+    private void rehash(String key) {
+        ContentHash hash = this.contentHash;
+        if (hash != null) rehash(hash, key);
+    }
+
+    /**
+     * hashes the current tag of the key, writes to the same key are serialized by the map so the sum stays consistent.
+     * An entry that is encoded again was reloaded by a bulk write, which drops the entry hashes anyway
+     */
+    private void rehash(ContentHash hash, String key) {
+        hash.entries.compute(key, (k, old) -> {
+            NBTBase tag = this.customDataTags.get(k);
+            long entry = NBTHash.entry(k, tag);
+            hash.sum.addAndGet(entry - (old == null ? 0 : old));
+            return tag == null ? null : entry;
+        });
+    }
+
+    /**
+     * @param other a {@link PersistentDataFile} or a container of the server
+     * @return the keys which only exist in one of the containers or have different values
+     */
+    public Set<NamespacedKey> diff(PersistentDataContainer other) {
+        Map<String, NBTBase> theirs;
+        if (other instanceof PersistentDataFile file) theirs = file.rawTags();
+        else if (other instanceof CraftPersistentDataContainer craft) theirs = craft.getRaw();
+        else throw new IllegalArgumentException("Unsupported container " + other);
+
+        Set<NamespacedKey> keys = new HashSet<>();
+        for (String raw : NBTHash.diff(rawTags(), theirs)) {
+            NamespacedKey key = PersistentDataKeys.fromRaw(raw);
+            if (key != null) keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * @return all tags decoded, a copy unless the file is concurrent
+     */
+    private Map<String, NBTBase> rawTags() {
+        decodeAll();
+        if (concurrent) return this.customDataTags;
+        synchronized (this) {
+            return new HashMap<>(this.customDataTags);
+        }
+    }
+
     public boolean has(NamespacedKey key) {
         Preconditions.checkArgument(key != null, "The provided key for the custom value was null");
-        return this.customDataTags.containsKey(key.toString());
+        String raw = PersistentDataKeys.toRaw(key);
+        return this.customDataTags.containsKey(raw) || (this.encodedTags != null && this.encodedTags.containsKey(raw));
     }
 
-    public void save() {
-        try(FileOutputStream fos = new FileOutputStream(file)) {
-            fos.write(serializeToBytes());
+    public DataFormat getFormat() {
+        return format;
+    }
+
+    private NBTBase tag(String key) {
+        NBTBase tag = this.customDataTags.get(key);
+        if (tag != null || this.encodedTags == null) return tag;
+        ByteBuffer encoded = this.encodedTags.get(key);
+        return encoded == null ? this.customDataTags.get(key) : decode(key, encoded);
+    }
+
+    /**
+     * moves an entry from the encoded into the decoded map, unless it was replaced or removed while it was decoded
+     */
+    private NBTBase decode(String key, ByteBuffer encoded) {
+        NBTBase tag;
+        try {
+            tag = UncompressedNBT.decode(key, encoded);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        if (!concurrent) {
+            synchronized (this) {
+                if (!this.encodedTags.remove(key, encoded)) return this.customDataTags.get(key);
+                this.customDataTags.put(key, tag);
+                return tag;
+            }
+        }
+        long stamp = beginWrite();
+        try {
+            NBTBase current = this.customDataTags.putIfAbsent(key, tag);
+            if (current != null) {
+                this.encodedTags.remove(key, encoded);
+                return current;
+            }
+            if (this.encodedTags.remove(key, encoded)) return tag;
+            // removed while decoding, take back the decoded value
+            if (this.customDataTags.remove(key, tag)) keyVersion.incrementAndGet();
+            return this.customDataTags.get(key);
+        } finally {
+            endWrite(stamp);
+        }
+    }
+
+    private void decodeAll() {
+        if (this.encodedTags == null) return;
+        for (String key : new ArrayList<>(this.encodedTags.keySet())) tag(key);
+    }
+
+    /**
+     * applies a set or, with a {@code null} tag, a remove and records it in the journal
+     *
+     * @return false if a removed key did not exist
+     */
+    private boolean write(String key, NBTBase tag) {
+        if (!concurrent) {
+            synchronized (this) {
+                return apply(key, tag);
+            }
+        }
+        long stamp = beginWrite();
+        try {
+            return apply(key, tag);
+        } finally {
+            endWrite(stamp);
+        }
+    }
+
+    private boolean compareAndWrite(String key, NBTBase expected, NBTBase tag) {
+        if (!concurrent) {
+            synchronized (this) {
+                return Objects.equals(this.customDataTags.get(key), expected) && apply(key, tag);
+            }
+        }
+        long stamp = beginWrite();
+        try {
+            if (expected != null) {
+                if (!this.customDataTags.replace(key, expected, tag)) return false;
+            } else {
+                if (this.customDataTags.putIfAbsent(key, tag) != null) return false;
+                keyVersion.incrementAndGet();
+            }
+            rehash(key);
+            // the sync journals the current tag of the key, so racing writers cannot leave an older record behind
+            journal(key);
+            return true;
+        } finally {
+            endWrite(stamp);
+        }
+    }
+
+    private boolean apply(String key, NBTBase tag) {
+        if (tag == null) {
+            if (!removeTag(key)) return false;
+        } else putTag(key, tag);
+        journal(key);
+        return true;
+    }
+
+    /**
+     * runs a mutation that touches many keys, snapshots never see it half applied
+     */
+    private void bulkWrite(Runnable action) {
+        // hashed again as a whole the next time it is asked for, instead of once per touched key
+        this.contentHash = null;
+        if (!concurrent) {
+            synchronized (this) {
+                action.run();
+                this.contentHash = null;
+            }
+            return;
+        }
+        long stamp = beginWrite();
+        try {
+            action.run();
+        } finally {
+            this.contentHash = null;
+            endWrite(stamp);
+        }
+    }
+
+    private void putTag(String key, NBTBase tag) {
+        boolean added = this.customDataTags.put(key, tag) == null;
+        if (this.encodedTags != null && this.encodedTags.remove(key) != null) added = false;
+        if (added) keyVersion.incrementAndGet();
+        rehash(key);
+    }
+
+    private boolean removeTag(String key) {
+        boolean removed = this.customDataTags.remove(key) != null;
+        if (this.encodedTags != null) removed |= this.encodedTags.remove(key) != null;
+        if (removed) {
+            keyVersion.incrementAndGet();
+            rehash(key);
+        }
+        return removed;
+    }
+
+    public SaveMode getSaveMode() {
+        return saveMode;
+    }
+
+    public boolean isDirty() {
+        return dirtyCount.get() != 0;
+    }
+
+    private void journal(String key) {
+        if (saveMode != SaveMode.JOURNAL) return;
+        journalPending.add(key);
+        if (journalScheduled.compareAndSet(false, true)) PersistentDataWriter.schedule(this::syncJournal, JOURNAL_SYNC_INTERVAL);
+    }
+
+    /**
+     * group commit of the pending keys. The current tag of a key is journaled instead of every single write,
+     * records are idempotent so only the latest value matters
+     */
+    void syncJournal() {
+        journalScheduled.set(false);
+        synchronized (ioLock) {
+            // under the io lock a sync never straddles a compaction, so the fresh journal never holds values older than the snapshot
+            String key = null;
+            try {
+                for (Iterator<String> iterator = journalPending.iterator(); iterator.hasNext(); key = null) {
+                    key = iterator.next();
+                    // removed before the tag is read, a write racing with this sync adds the key again
+                    iterator.remove();
+                    journal.append(key, tag(key));
+                }
+                journal.sync();
+            } catch (IOException e) {
+                if (key != null) journalPending.add(key);
+                if (journalScheduled.compareAndSet(false, true)) PersistentDataWriter.schedule(this::syncJournal, JOURNAL_SYNC_INTERVAL);
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private void changed() {
+        int dirty = dirtyCount.incrementAndGet();
+        switch (saveMode) {
+            case IMMEDIATE -> {
+                if (batchDepth.get() == 0) save();
+            }
+            case WRITE_BEHIND, JOURNAL -> {
+                if (dirty == flushThreshold) PersistentDataWriter.execute(this::writeBehind);
+                // past the threshold after a failed save, the delayed flush retries it
+                else if (flushScheduled.compareAndSet(false, true)) PersistentDataWriter.schedule(this::writeBehind, flushInterval);
+            }
+        }
+    }
+
+    /**
+     * defers the saves of {@link SaveMode#IMMEDIATE} until {@link #endBatch()}, the other modes already coalesce their writes
+     */
+    @Override
+    public void beginBatch() {
+        batchDepth.incrementAndGet();
+    }
+
+    @Override
+    public void endBatch() {
+        if (batchDepth.decrementAndGet() == 0 && saveMode == SaveMode.IMMEDIATE) flush();
+    }
+
+    private void writeBehind() {
+        flushScheduled.set(false);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // retry later, the mutations are still counted as dirty
+            if (flushScheduled.compareAndSet(false, true)) PersistentDataWriter.schedule(this::writeBehind, flushInterval);
+            throw e;
+        }
+    }
+
+    /**
+     * writes the file if there are unsaved (or in {@link SaveMode#JOURNAL} mode uncompacted) mutations.
+     * <p>
+     * blocks until the data is on disk, call this in {@link org.bukkit.plugin.Plugin#onDisable()} when using {@link SaveMode#WRITE_BEHIND}
+     */
+    public void flush() {
+        synchronized (ioLock) {
+            if (isDirty()) save();
+        }
+    }
+
+    public void save() {
+        synchronized (ioLock) {
+            // reset before the snapshot, a mutation that is missed by the snapshot marks the file dirty again
+            int dirty = dirtyCount.getAndSet(0);
+            try {
+                // every record of the rotated journal is older than the snapshot, everything newer goes into the fresh journal
+                if (saveMode == SaveMode.JOURNAL) journal.rotate();
+                PersistentDataWriter.writeAtomic(file, encode(snapshot()));
+                if (saveMode == SaveMode.JOURNAL) journal.compacted();
+                else if (staleJournal) {
+                    journal.delete();
+                    staleJournal = false;
+                }
+            } catch (IOException e) {
+                dirtyCount.addAndGet(dirty);
+                throw new RuntimeException(e);
+            }
+        }
     }
 
     public void update() {
         try {
             file.createNewFile();
-            try(FileInputStream fis = new FileInputStream(file)) {
-                byte[] data = fis.readAllBytes();
-                if (data.length!=0) readFromBytes(data, false);
+            if (format == DataFormat.MAPPED) {
+                Map<String, ByteBuffer> index = UncompressedNBT.index(UncompressedNBT.map(file));
+                bulkWrite(() -> {
+                    index.keySet().forEach(this.customDataTags::remove);
+                    this.encodedTags.putAll(index);
+                    keyVersion.incrementAndGet();
+                });
+            } else {
+                try(FileInputStream fis = new FileInputStream(file)) {
+                    byte[] data = fis.readAllBytes();
+                    if (data.length!=0) readFromBytes(data, false);
+                }
+            }
+            if (journal.exists()) {
+                bulkWrite(() -> {
+                    try {
+                        journal.replay((key, tag) -> {
+                            if (tag == null) removeTag(key);
+                            else putTag(key, tag);
+                        });
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                staleJournal = saveMode != SaveMode.JOURNAL;
+                // the next flush folds the replayed records into the file
+                dirtyCount.incrementAndGet();
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -132,11 +614,79 @@ public class PersistentDataFile implements PersistentDataContainer {
     }
 
     public byte[] serializeToBytes() throws IOException {
+        return encode(snapshot());
+    }
+
+    NBTTagCompound snapshotCompound() {
+        decodeAll();
+        return snapshot().decoded();
+    }
+
+    void putRaw(String key, NBTBase tag) {
+        write(key, tag);
+        changed();
+    }
+
+    private byte[] encode(Snapshot snapshot) throws IOException {
+        return format == DataFormat.MAPPED ? UncompressedNBT.write(snapshot.decoded(), snapshot.encoded()) : serialize(snapshot.decoded());
+    }
+
+    /**
+     * a concurrent file copies optimistically and retries if a write ran during the copy. Writers only wait if the copies
+     * kept failing, then they are held back for a single locked copy so a steady stream of writes cannot starve the save
+     */
+    private Snapshot snapshot() {
+        if (!concurrent) {
+            synchronized (this) {
+                return copy();
+            }
+        }
+        for (int attempt = 0; attempt < OPTIMISTIC_SNAPSHOTS; attempt++) {
+            long started = writesStarted.get();
+            if (writesFinished.get() == started) {
+                Snapshot snapshot = copy();
+                if (writesStarted.get() == started) return snapshot;
+            }
+            Thread.onSpinWait();
+        }
+        long stamp = snapshotLock.writeLock();
+        try {
+            return copy();
+        } finally {
+            snapshotLock.unlockWrite(stamp);
+        }
+    }
+
+    private long beginWrite() {
+        long stamp = snapshotLock.readLock();
+        writesStarted.incrementAndGet();
+        return stamp;
+    }
+
+    private void endWrite(long stamp) {
+        writesFinished.incrementAndGet();
+        snapshotLock.unlockRead(stamp);
+    }
+
+    private Snapshot copy() {
         NBTTagCompound root = new NBTTagCompound();
 
         for (Map.Entry<String, NBTBase> entry : this.customDataTags.entrySet()) {
             root.a(entry.getKey(), entry.getValue());
         }
+        return new Snapshot(root, this.encodedTags == null ? null : new HashMap<>(this.encodedTags));
+    }
+
+    private record KeySet(int version, Set<NamespacedKey> keys) {}
+
+    private static final class ContentHash {
+        private final Map<String, Long> entries = new ConcurrentHashMap<>();
+        private final AtomicLong sum = new AtomicLong();
+    }
+
+    private record Snapshot(NBTTagCompound decoded, Map<String, ByteBuffer> encoded) {}
+
+    static byte[] serialize(NBTTagCompound root) throws IOException {
         ByteArrayOutputStream byteArrayOutput = new ByteArrayOutputStream();
         DataOutputStream dataOutput = new DataOutputStream(byteArrayOutput);
 
@@ -159,25 +709,22 @@ public class PersistentDataFile implements PersistentDataContainer {
     }
 
     public void readFromBytes(byte[] bytes, boolean clear) throws IOException {
-        if (clear) this.customDataTags.clear();
-
-        DataInputStream dataInput = new DataInputStream(new ByteArrayInputStream(bytes));
-
-        try {
-            NBTTagCompound compound = NBTCompressedStreamTools.a((InputStream) dataInput);
-            for (String key : compound.e()) {
-                this.customDataTags.put(key, compound.c(key));
+        NBTTagCompound compound = format == DataFormat.MAPPED ? UncompressedNBT.read(bytes) : deserialize(bytes);
+        bulkWrite(() -> {
+            if (clear) {
+                this.customDataTags.clear();
+                if (this.encodedTags != null) this.encodedTags.clear();
+                keyVersion.incrementAndGet();
             }
-        } catch (Throwable var7) {
-            try {
-                dataInput.close();
-            } catch (Throwable var6) {
-                var7.addSuppressed(var6);
+            for (String key : compound.e()) {
+                putTag(key, compound.c(key));
             }
+        });
+    }
 
-            throw var7;
+    static NBTTagCompound deserialize(byte[] bytes) throws IOException {
+        try (DataInputStream dataInput = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return NBTCompressedStreamTools.a((InputStream) dataInput);
         }
-
-        dataInput.close();
     }
 }
@@ -1,5 +1,10 @@
 package de.cyklon.spigotutils.persistence;
 
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagDouble;
+import net.minecraft.nbt.NBTTagInt;
+import net.minecraft.nbt.NBTTagLong;
+import org.bukkit.Bukkit;
 import org.bukkit.NamespacedKey;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
@@ -7,19 +12,34 @@ import org.bukkit.persistence.PersistentDataAdapterContext;
 import org.bukkit.persistence.PersistentDataContainer;
 import org.bukkit.persistence.PersistentDataHolder;
 import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongUnaryOperator;
 
 public final class PersistentDataHandler {
 
+    private static volatile Executor asyncExecutor = defaultExecutor();
+
     private final PersistentDataContainer container;
+    private final RawDataContainer raw;
+    private final Object reviseLock = new Object();
 
     private PersistentDataHandler(@NotNull PersistentDataContainer container, Runnable changeHandler) {
         this.container = changeHandler==null ? container : new HandlePersistentDataContainer(container, changeHandler);
+        this.raw = RawDataContainer.of(this.container);
     }
 
     public static PersistentDataHandler get(@NotNull final ItemStack stack) {
@@ -35,8 +55,168 @@ public final class PersistentDataHandler {
         return new PersistentDataHandler(holder.getPersistentDataContainer(), null);
     }
 
+    /**
+     * @param file a data file, or a directory which is opened as sharded {@link PersistentDataStore}
+     */
     public static PersistentDataHandler get(@NotNull File file) {
-        return new PersistentDataHandler(new PersistentDataFile(file), null);
+        return get(file, SaveMode.IMMEDIATE);
+    }
+
+    public static PersistentDataHandler get(@NotNull File file, @NotNull SaveMode saveMode) {
+        PersistentDataContainer container = file.isDirectory()
+                ? new PersistentDataStore(file, PersistentDataStore.DEFAULT_SHARDS, saveMode)
+                : new PersistentDataFile(file, saveMode);
+        return new PersistentDataHandler(container, null);
+    }
+
+    /**
+     * opens the file on the {@link #getAsyncExecutor() async executor}, so reading and decompressing it never blocks the calling thread.
+     * The loaded handler uses a {@link ConcurrentPersistentDataFile}, so it can be used from the main thread and async tasks alike
+     *
+     * @param file a data file, or a directory which is opened as concurrent {@link PersistentDataStore} with every shard loaded
+     */
+    public static CompletableFuture<PersistentDataHandler> loadAsync(@NotNull File file) {
+        return loadAsync(file, SaveMode.WRITE_BEHIND);
+    }
+
+    public static CompletableFuture<PersistentDataHandler> loadAsync(@NotNull File file, @NotNull SaveMode saveMode) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (!file.isDirectory()) return new PersistentDataHandler(new ConcurrentPersistentDataFile(file, saveMode), null);
+            PersistentDataStore store = new PersistentDataStore(file, PersistentDataStore.DEFAULT_SHARDS, saveMode, true);
+            store.loadAll();
+            return new PersistentDataHandler(store, null);
+        }, asyncExecutor);
+    }
+
+    /**
+     * @param executor the executor the async methods run and complete on
+     */
+    public static void setAsyncExecutor(@NotNull Executor executor) {
+        asyncExecutor = executor;
+    }
+
+    /**
+     * runs the async methods on the async scheduler of bukkit, the tasks are bound to the lifecycle of the plugin
+     */
+    public static void useBukkitScheduler(@NotNull Plugin plugin) {
+        setAsyncExecutor(task -> Bukkit.getScheduler().runTaskAsynchronously(plugin, task));
+    }
+
+    /**
+     * @return the executor of the async methods, by default a virtual thread per task if the runtime supports them
+     */
+    public static Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    private static Executor defaultExecutor() {
+        try {
+            // java 21+, looked up reflectively because the library targets java 17
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "SpigotUtils-PersistentDataHandler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * saves the underlying file or store on the {@link #getAsyncExecutor() async executor}.
+     * Containers that are not backed by a file are saved by their holder, the future is completed immediately
+     */
+    public CompletableFuture<Void> saveAsync() {
+        if (container instanceof PersistentDataFile file) return CompletableFuture.runAsync(file::save, asyncExecutor);
+        if (container instanceof PersistentDataStore store) return CompletableFuture.runAsync(store::save, asyncExecutor);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * revises the value on the {@link #getAsyncExecutor() async executor}.
+     * Async revisions of the same handler do not interleave, the container has to be safe to use off the main thread
+     * (e.g. a file loaded by {@link #loadAsync(File)}, not the container of an item or entity)
+     */
+    public <T, Z> CompletableFuture<Z> reviseAsync(@NotNull NamespacedKey namespacedKey, @NotNull PersistentDataType<T, Z> persistentDataType, @NotNull Function<Z, Z> function) {
+        return CompletableFuture.supplyAsync(() -> {
+            synchronized (reviseLock) {
+                return revise(namespacedKey, persistentDataType, function);
+            }
+        }, asyncExecutor);
+    }
+
+    /**
+     * @see #reviseAsync(NamespacedKey, PersistentDataType, Function)
+     */
+    public <T, Z> CompletableFuture<Z> reviseWithDefaultAsync(@NotNull NamespacedKey namespacedKey, @NotNull PersistentDataType<T, Z> persistentDataType, @NotNull Function<Z, Z> function, @NotNull Z def) {
+        return CompletableFuture.supplyAsync(() -> {
+            synchronized (reviseLock) {
+                return reviseWithDefault(namespacedKey, persistentDataType, function, def);
+            }
+        }, asyncExecutor);
+    }
+
+    public CompletableFuture<Integer> reviseIntAsync(@NotNull NamespacedKey namespacedKey, @NotNull Function<Integer, Integer> function) {
+        return reviseAsync(namespacedKey, PersistentDataType.INTEGER, function);
+    }
+
+    public CompletableFuture<Long> reviseLongAsync(@NotNull NamespacedKey namespacedKey, @NotNull Function<Long, Long> function) {
+        return reviseAsync(namespacedKey, PersistentDataType.LONG, function);
+    }
+
+    public CompletableFuture<Double> reviseDoubleAsync(@NotNull NamespacedKey namespacedKey, @NotNull Function<Double, Double> function) {
+        return reviseAsync(namespacedKey, PersistentDataType.DOUBLE, function);
+    }
+
+    public CompletableFuture<String> reviseStringAsync(@NotNull NamespacedKey namespacedKey, @NotNull Function<String, String> function) {
+        return reviseAsync(namespacedKey, PersistentDataType.STRING, function);
+    }
+
+    public CompletableFuture<Integer> reviseIntWithDefaultAsync(@NotNull NamespacedKey namespacedKey, @NotNull Function<Integer, Integer> function, @NotNull Integer def) {
+        return reviseWithDefaultAsync(namespacedKey, PersistentDataType.INTEGER, function, def);
+    }
+
+    public CompletableFuture<Long> reviseLongWithDefaultAsync(@NotNull NamespacedKey namespacedKey, @NotNull Function<Long, Long> function, @NotNull Long def) {
+        return reviseWithDefaultAsync(namespacedKey, PersistentDataType.LONG, function, def);
+    }
+
+    public CompletableFuture<Double> reviseDoubleWithDefaultAsync(@NotNull NamespacedKey namespacedKey, @NotNull Function<Double, Double> function, @NotNull Double def) {
+        return reviseWithDefaultAsync(namespacedKey, PersistentDataType.DOUBLE, function, def);
+    }
+
+    public CompletableFuture<String> reviseStringWithDefaultAsync(@NotNull NamespacedKey namespacedKey, @NotNull Function<String, String> function, @NotNull String def) {
+        return reviseWithDefaultAsync(namespacedKey, PersistentDataType.STRING, function, def);
+    }
+
+    /**
+     * runs all changes of the action as one batch, the item meta is applied and the file is saved once after the action
+     * instead of after every single change
+     */
+    public void batch(@NotNull Consumer<PersistentDataHandler> action) {
+        Batchable batchable = container instanceof Batchable b ? b : null;
+        if (batchable != null) batchable.beginBatch();
+        try {
+            action.accept(this);
+        } finally {
+            if (batchable != null) batchable.endBatch();
+        }
+    }
+
+    /**
+     * sets the value only if the current value equals the expected one.
+     * Atomic for files and stores, other containers are only guarded against the async methods of this handler
+     *
+     * @param expected the expected value, {@code null} if the key is expected to be absent
+     * @return false if the current value did not match
+     */
+    public <T, Z> boolean compareAndSet(@NotNull NamespacedKey namespacedKey, @NotNull PersistentDataType<T, Z> persistentDataType, @Nullable Z expected, @NotNull Z z) {
+        if (container instanceof PersistentDataFile file) return file.compareAndSet(namespacedKey, persistentDataType, expected, z);
+        if (container instanceof PersistentDataStore store) return store.compareAndSet(namespacedKey, persistentDataType, expected, z);
+        synchronized (reviseLock) {
+            if (!Objects.deepEquals(get(namespacedKey, persistentDataType), expected)) return false;
+            set(namespacedKey, persistentDataType, z);
+            return true;
+        }
     }
 
     public <T, Z> void set(@NotNull NamespacedKey namespacedKey, @NotNull PersistentDataType<T, Z> persistentDataType, @NotNull Z z) {
@@ -354,6 +534,116 @@ public final class PersistentDataHandler {
         return getOrDefault(namespacedKey, PersistentDataType.TAG_CONTAINER, def);
     }
 
+    /*
+     * primitive accessors, they read and write the nbt tags directly instead of boxing through PersistentDataType.
+     * The revise and add methods retry if the value was changed concurrently, so the operator may be applied more than once
+     */
+
+    public int getIntOrDefault(@NotNull NamespacedKey namespacedKey, int def) {
+        if (raw == null) return getOrDefault(namespacedKey, PersistentDataType.INTEGER, def);
+        NBTBase tag = raw.getTag(namespacedKey);
+        return tag == null ? def : asInt(tag);
+    }
+
+    public long getLongOrDefault(@NotNull NamespacedKey namespacedKey, long def) {
+        if (raw == null) return getOrDefault(namespacedKey, PersistentDataType.LONG, def);
+        NBTBase tag = raw.getTag(namespacedKey);
+        return tag == null ? def : asLong(tag);
+    }
+
+    public double getDoubleOrDefault(@NotNull NamespacedKey namespacedKey, double def) {
+        if (raw == null) return getOrDefault(namespacedKey, PersistentDataType.DOUBLE, def);
+        NBTBase tag = raw.getTag(namespacedKey);
+        return tag == null ? def : asDouble(tag);
+    }
+
+    /**
+     * @return the new value, a missing value counts as 0
+     */
+    public int addInt(@NotNull NamespacedKey namespacedKey, int delta) {
+        if (raw == null) return reviseIntWithDefault(namespacedKey, i -> i + delta, 0);
+        while (true) {
+            NBTBase current = raw.getTag(namespacedKey);
+            int value = (current == null ? 0 : asInt(current)) + delta;
+            if (raw.compareAndSetTag(namespacedKey, current, NBTTagInt.a(value))) return value;
+        }
+    }
+
+    /**
+     * @return the new value, a missing value counts as 0
+     */
+    public long addLong(@NotNull NamespacedKey namespacedKey, long delta) {
+        if (raw == null) return reviseLongWithDefault(namespacedKey, l -> l + delta, 0L);
+        while (true) {
+            NBTBase current = raw.getTag(namespacedKey);
+            long value = (current == null ? 0 : asLong(current)) + delta;
+            if (raw.compareAndSetTag(namespacedKey, current, NBTTagLong.a(value))) return value;
+        }
+    }
+
+    /**
+     * @return the new value, a missing value counts as 0
+     */
+    public double addDouble(@NotNull NamespacedKey namespacedKey, double delta) {
+        if (raw == null) return reviseDoubleWithDefault(namespacedKey, d -> d + delta, 0D);
+        while (true) {
+            NBTBase current = raw.getTag(namespacedKey);
+            double value = (current == null ? 0 : asDouble(current)) + delta;
+            if (raw.compareAndSetTag(namespacedKey, current, NBTTagDouble.a(value))) return value;
+        }
+    }
+
+    public int reviseAsInt(@NotNull NamespacedKey namespacedKey, @NotNull IntUnaryOperator operator, int def) {
+        if (raw == null) return reviseIntWithDefault(namespacedKey, operator::applyAsInt, def);
+        while (true) {
+            NBTBase current = raw.getTag(namespacedKey);
+            int value = operator.applyAsInt(current == null ? def : asInt(current));
+            if (raw.compareAndSetTag(namespacedKey, current, NBTTagInt.a(value))) return value;
+        }
+    }
+
+    public long reviseAsLong(@NotNull NamespacedKey namespacedKey, @NotNull LongUnaryOperator operator, long def) {
+        if (raw == null) return reviseLongWithDefault(namespacedKey, operator::applyAsLong, def);
+        while (true) {
+            NBTBase current = raw.getTag(namespacedKey);
+            long value = operator.applyAsLong(current == null ? def : asLong(current));
+            if (raw.compareAndSetTag(namespacedKey, current, NBTTagLong.a(value))) return value;
+        }
+    }
+
+    public double reviseAsDouble(@NotNull NamespacedKey namespacedKey, @NotNull DoubleUnaryOperator operator, double def) {
+        if (raw == null) return reviseDoubleWithDefault(namespacedKey, operator::applyAsDouble, def);
+        while (true) {
+            NBTBase current = raw.getTag(namespacedKey);
+            double value = operator.applyAsDouble(current == null ? def : asDouble(current));
+            if (raw.compareAndSetTag(namespacedKey, current, NBTTagDouble.a(value))) return value;
+        }
+    }
+
+    /**
+     * {@link NBTTagInt#g()} is {@code getAsInt}
+     */
+    private static int asInt(NBTBase tag) {
+        if (tag instanceof NBTTagInt nbt) return nbt.g();
+        throw new IllegalArgumentException("The found tag instance (" + tag.getClass().getSimpleName() + ") cannot store Integer");
+    }
+
+    /**
+     * {@link NBTTagLong#f()} is {@code getAsLong}
+     */
+    private static long asLong(NBTBase tag) {
+        if (tag instanceof NBTTagLong nbt) return nbt.f();
+        throw new IllegalArgumentException("The found tag instance (" + tag.getClass().getSimpleName() + ") cannot store Long");
+    }
+
+    /**
+     * {@link NBTTagDouble#j()} is {@code getAsDouble}
+     */
+    private static double asDouble(NBTBase tag) {
+        if (tag instanceof NBTTagDouble nbt) return nbt.j();
+        throw new IllegalArgumentException("The found tag instance (" + tag.getClass().getSimpleName() + ") cannot store Double");
+    }
+
     @NotNull
     public Set<NamespacedKey> getKeys() {
         return container.getKeys();
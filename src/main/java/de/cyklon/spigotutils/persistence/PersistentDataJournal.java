@@ -0,0 +1,154 @@
+package de.cyklon.spigotutils.persistence;
+
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTCompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * append-only log of set/remove deltas next to a {@link PersistentDataFile}.
+ * <p>
+ * every record is framed as {@code [length][crc32][uncompressed nbt]}, replay stops at the first torn or corrupt record.
+ * Records are idempotent, so replaying records that are already part of the snapshot is harmless.
+ * Appends and rotations may come from different threads.
+ * <p>
+ * Appends only reach the page cache, {@link #sync()} forces everything appended so far with a single fsync.
+ * The file appends and syncs on its background writer, so the mutations of one sync window are committed together.
+ */
+final class PersistentDataJournal implements Closeable {
+
+    private static final String KEY = "k";
+    private static final String VALUE = "v";
+
+    private final File journal;
+    private final File rotated;
+    private FileChannel channel;
+
+    PersistentDataJournal(File file) {
+        this.journal = new File(file.getPath() + ".journal");
+        this.rotated = new File(file.getPath() + ".journal.old");
+    }
+
+    boolean exists() {
+        return journal.exists() || rotated.exists();
+    }
+
+    /**
+     * replays the rotated journal of an interrupted compaction and then the current journal,
+     * removes are passed with a {@code null} tag
+     */
+    void replay(BiConsumer<String, NBTBase> tags) throws IOException {
+        if (rotated.exists()) replay(rotated, tags);
+        if (journal.exists()) {
+            long valid = replay(journal, tags);
+            if (valid < journal.length()) {
+                try (FileChannel channel = FileChannel.open(journal.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+        }
+    }
+
+    private static long replay(File file, BiConsumer<String, NBTBase> tags) throws IOException {
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length < 0) break;
+                    payload = in.readNBytes(length);
+                    if (payload.length != length) break;
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) break;
+                } catch (EOFException e) {
+                    break;
+                }
+                NBTTagCompound record = NBTCompressedStreamTools.a((DataInput) new DataInputStream(new ByteArrayInputStream(payload)));
+                String key = record.l(KEY);
+                tags.accept(key, record.e(VALUE) ? record.c(VALUE) : null);
+                valid += 8 + payload.length;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * appends a delta, a {@code null} tag records a remove
+     */
+    synchronized void append(String key, NBTBase tag) throws IOException {
+        NBTTagCompound record = new NBTTagCompound();
+        record.a(KEY, key);
+        if (tag != null) record.a(VALUE, tag);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        NBTCompressedStreamTools.a(record, (DataOutput) new DataOutputStream(bytes));
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        if (channel == null) {
+            boolean created = !journal.exists();
+            channel = FileChannel.open(journal.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (created) PersistentDataWriter.forceDirectory(journal.toPath());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8 + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    /**
+     * forces every appended record to disk
+     */
+    synchronized void sync() throws IOException {
+        if (channel != null) channel.force(false);
+    }
+
+    /**
+     * moves the current journal aside, following appends go into a fresh journal.
+     * Has to be called right before taking the snapshot that is about to be written
+     */
+    synchronized void rotate() throws IOException {
+        close();
+        if (journal.exists()) {
+            if (rotated.exists()) {
+                // a previous compaction failed, keep its records in front of the new ones
+                try (FileOutputStream append = new FileOutputStream(rotated, true)) {
+                    Files.copy(journal.toPath(), append);
+                }
+                Files.delete(journal.toPath());
+            } else Files.move(journal.toPath(), rotated.toPath());
+        }
+    }
+
+    /**
+     * drops the rotated journal once the snapshot containing its records is on disk
+     */
+    synchronized void compacted() throws IOException {
+        Files.deleteIfExists(rotated.toPath());
+    }
+
+    synchronized void delete() throws IOException {
+        close();
+        Files.deleteIfExists(journal.toPath());
+        Files.deleteIfExists(rotated.toPath());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
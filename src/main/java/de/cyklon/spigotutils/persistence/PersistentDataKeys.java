@@ -0,0 +1,55 @@
+package de.cyklon.spigotutils.persistence;
+
+import org.bukkit.NamespacedKey;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * caches the mapping between {@link NamespacedKey}s and the key strings the data is stored under,
+ * so hot lookups neither concatenate nor split strings.
+ * <p>
+ * The returned strings are canonical, so map lookups with them mostly end at the identity check of {@link String#equals(Object)}
+ */
+final class PersistentDataKeys {
+
+    /**
+     * keeps the caches bounded if keys are generated dynamically, e.g. per player
+     */
+    private static final int MAX_SIZE = 8192;
+
+    private static final Map<NamespacedKey, String> RAW_KEYS = new ConcurrentHashMap<>();
+    private static final Map<String, NamespacedKey> KEYS = new ConcurrentHashMap<>();
+
+    private PersistentDataKeys() {}
+
+    static String toRaw(NamespacedKey key) {
+        String raw = RAW_KEYS.get(key);
+        if (raw != null) return raw;
+        raw = key.toString();
+        if (RAW_KEYS.size() < MAX_SIZE) {
+            String previous = RAW_KEYS.putIfAbsent(key, raw);
+            if (previous != null) return previous;
+            KEYS.putIfAbsent(raw, key);
+        }
+        return raw;
+    }
+
+    /**
+     * @return the key or {@code null} if the string is not a namespaced key
+     */
+    static NamespacedKey fromRaw(String raw) {
+        NamespacedKey key = KEYS.get(raw);
+        if (key != null) return key;
+        String[] keyData = raw.split(":", 2);
+        if (keyData.length != 2) return null;
+        key = new NamespacedKey(keyData[0], keyData[1]);
+        if (KEYS.size() < MAX_SIZE) {
+            NamespacedKey previous = KEYS.putIfAbsent(raw, key);
+            if (previous != null) return previous;
+            RAW_KEYS.putIfAbsent(key, raw);
+        }
+        return key;
+    }
+
+}
@@ -0,0 +1,297 @@
+package de.cyklon.spigotutils.persistence;
+
+import com.google.common.base.Preconditions;
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagCompound;
+import org.bukkit.NamespacedKey;
+import org.bukkit.craftbukkit.v1_20_R1.persistence.CraftPersistentDataAdapterContext;
+import org.bukkit.craftbukkit.v1_20_R1.persistence.CraftPersistentDataTypeRegistry;
+import org.bukkit.persistence.PersistentDataAdapterContext;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * a {@link PersistentDataContainer} for large keyspaces that hashes every key into one of N shard files inside a directory.
+ * <p>
+ * Shards are only loaded on first access and every shard saves on its own, so a mutation only rewrites the shard it belongs to.
+ * A concurrent store uses {@link ConcurrentPersistentDataFile} shards, use {@link #loadAll()} to load them up front.
+ */
+public class PersistentDataStore implements PersistentDataContainer, Batchable, RawDataContainer {
+
+    public static final int DEFAULT_SHARDS = 16;
+
+    private static final String SHARD_COUNT_FILE = "shards";
+
+    private final File directory;
+    private final int shardCount;
+    private final SaveMode saveMode;
+    private final boolean concurrent;
+    private final AtomicReferenceArray<PersistentDataFile> shards;
+    private final PersistentDataAdapterContext adapterContext;
+    private int batchDepth;
+
+    public PersistentDataStore(File directory) {
+        this(directory, DEFAULT_SHARDS);
+    }
+
+    public PersistentDataStore(File directory, int shards) {
+        this(directory, shards, SaveMode.IMMEDIATE);
+    }
+
+    public PersistentDataStore(File directory, int shards, SaveMode saveMode) {
+        this(directory, shards, saveMode, false);
+    }
+
+    /**
+     * @param concurrent whether the store is shared between the main thread and async tasks
+     */
+    public PersistentDataStore(File directory, int shards, SaveMode saveMode, boolean concurrent) {
+        Preconditions.checkArgument(directory != null, "The directory cannot be null");
+        Preconditions.checkArgument(shards > 0, "The shard count must be positive");
+        Preconditions.checkArgument(saveMode != null, "The SaveMode cannot be null");
+        this.directory = directory;
+        this.shardCount = checkShardCount(directory, shards);
+        this.saveMode = saveMode;
+        this.concurrent = concurrent;
+        this.shards = new AtomicReferenceArray<>(shards);
+        this.adapterContext = new CraftPersistentDataAdapterContext(new CraftPersistentDataTypeRegistry());
+    }
+
+    /**
+     * the keys are distributed by the shard count, so reopening a store with another count would lose keys
+     */
+    private static int checkShardCount(File directory, int shards) {
+        try {
+            Files.createDirectories(directory.toPath());
+            File countFile = new File(directory, SHARD_COUNT_FILE);
+            if (countFile.exists()) {
+                int stored = Integer.parseInt(Files.readString(countFile.toPath(), StandardCharsets.UTF_8).trim());
+                if (stored != shards) throw new IllegalStateException("The store '" + directory + "' was created with " + stored + " shards, not " + shards);
+            } else Files.writeString(countFile.toPath(), Integer.toString(shards), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return shards;
+    }
+
+    /**
+     * 32 bit fnv-1a over the utf-8 bytes of the raw key. Fixed instead of {@link NamespacedKey#hashCode()},
+     * the shard of a key is part of the layout on disk and must not change with the server version
+     */
+    private int shardIndex(NamespacedKey key) {
+        int h = 0x811C9DC5;
+        for (byte b : PersistentDataKeys.toRaw(key).getBytes(StandardCharsets.UTF_8)) h = (h ^ (b & 0xFF)) * 0x01000193;
+        return Math.floorMod(h, shardCount);
+    }
+
+    private PersistentDataFile shard(NamespacedKey key) {
+        return shard(shardIndex(key));
+    }
+
+    private PersistentDataFile shard(int index) {
+        PersistentDataFile shard = shards.get(index);
+        if (shard == null) {
+            synchronized (shards) {
+                shard = shards.get(index);
+                if (shard == null) {
+                    File file = new File(directory, "shard-" + index + ".dat");
+                    shard = concurrent ? new ConcurrentPersistentDataFile(file, saveMode) : new PersistentDataFile(file, saveMode);
+                    // a shard loaded during a batch joins it
+                    for (int i = 0; i < batchDepth; i++) shard.beginBatch();
+                    shards.set(index, shard);
+                }
+            }
+        }
+        return shard;
+    }
+
+    /**
+     * loads every shard that is not loaded yet, so later accesses never read from the disk
+     */
+    public void loadAll() {
+        for (int i = 0; i < shardCount; i++) shard(i);
+    }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    @Override
+    public <T, Z> void set(@NotNull NamespacedKey key, @NotNull PersistentDataType<T, Z> type, @NotNull Z value) {
+        Preconditions.checkArgument(key != null, "The NamespacedKey key cannot be null");
+        shard(key).set(key, type, value);
+    }
+
+    /**
+     * @see PersistentDataFile#compareAndSet(NamespacedKey, PersistentDataType, Object, Object)
+     */
+    public <T, Z> boolean compareAndSet(@NotNull NamespacedKey key, @NotNull PersistentDataType<T, Z> type, Z expected, @NotNull Z value) {
+        Preconditions.checkArgument(key != null, "The NamespacedKey key cannot be null");
+        return shard(key).compareAndSet(key, type, expected, value);
+    }
+
+    @Override
+    public NBTBase getTag(NamespacedKey key) {
+        return shard(key).getTag(key);
+    }
+
+    @Override
+    public boolean compareAndSetTag(NamespacedKey key, NBTBase expected, NBTBase tag) {
+        return shard(key).compareAndSetTag(key, expected, tag);
+    }
+
+    @Override
+    public <T, Z> boolean has(@NotNull NamespacedKey key, @NotNull PersistentDataType<T, Z> type) {
+        Preconditions.checkArgument(key != null, "The NamespacedKey key cannot be null");
+        return shard(key).has(key, type);
+    }
+
+    @Override
+    public boolean has(@NotNull NamespacedKey key) {
+        Preconditions.checkArgument(key != null, "The provided key for the custom value was null");
+        return shard(key).has(key);
+    }
+
+    @Override
+    public <T, Z> Z get(@NotNull NamespacedKey key, @NotNull PersistentDataType<T, Z> type) {
+        Preconditions.checkArgument(key != null, "The NamespacedKey key cannot be null");
+        return shard(key).get(key, type);
+    }
+
+    @Override
+    public <T, Z> @NotNull Z getOrDefault(@NotNull NamespacedKey key, @NotNull PersistentDataType<T, Z> type, @NotNull Z defaultValue) {
+        Z z = this.get(key, type);
+        return z != null ? z : defaultValue;
+    }
+
+    /**
+     * loads every shard
+     */
+    @Override
+    public @NotNull Set<NamespacedKey> getKeys() {
+        Set<NamespacedKey> keys = new HashSet<>();
+        for (int i = 0; i < shardCount; i++) keys.addAll(shard(i).keys());
+        return keys;
+    }
+
+    @Override
+    public void remove(@NotNull NamespacedKey key) {
+        Preconditions.checkArgument(key != null, "The NamespacedKey key cannot be null");
+        shard(key).remove(key);
+    }
+
+    /**
+     * loads every shard
+     */
+    @Override
+    public boolean isEmpty() {
+        for (int i = 0; i < shardCount; i++) if (!shard(i).isEmpty()) return false;
+        return true;
+    }
+
+    @Override
+    public @NotNull PersistentDataAdapterContext getAdapterContext() {
+        return adapterContext;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * writes every loaded shard that has unsaved mutations, blocks until the data is on disk
+     */
+    public void flush() {
+        for (int i = 0; i < shardCount; i++) {
+            PersistentDataFile shard = shards.get(i);
+            if (shard != null) shard.flush();
+        }
+    }
+
+    @Override
+    public void beginBatch() {
+        synchronized (shards) {
+            batchDepth++;
+            for (int i = 0; i < shardCount; i++) {
+                PersistentDataFile shard = shards.get(i);
+                if (shard != null) shard.beginBatch();
+            }
+        }
+    }
+
+    @Override
+    public void endBatch() {
+        synchronized (shards) {
+            batchDepth--;
+            for (int i = 0; i < shardCount; i++) {
+                PersistentDataFile shard = shards.get(i);
+                if (shard != null) shard.endBatch();
+            }
+        }
+    }
+
+    /**
+     * only the dirty shards are rewritten
+     */
+    public void save() {
+        flush();
+    }
+
+    @Override
+    public byte @NotNull [] serializeToBytes() throws IOException {
+        NBTTagCompound root = new NBTTagCompound();
+        for (int i = 0; i < shardCount; i++) {
+            NBTTagCompound compound = shard(i).snapshotCompound();
+            for (String key : compound.e()) root.a(key, compound.c(key));
+        }
+        return PersistentDataFile.serialize(root);
+    }
+
+    @Override
+    public void readFromBytes(byte @NotNull [] bytes, boolean clear) throws IOException {
+        NBTTagCompound compound = PersistentDataFile.deserialize(bytes);
+        // the shard of a key is only known for valid keys, reject the data before anything is changed
+        Map<String, NamespacedKey> keys = new HashMap<>();
+        List<String> invalid = new ArrayList<>();
+        for (String raw : compound.e()) {
+            NamespacedKey key = NamespacedKey.fromString(raw);
+            if (key == null) invalid.add(raw);
+            else keys.put(raw, key);
+        }
+        if (!invalid.isEmpty()) throw new IOException(invalid.size() + " keys are no valid NamespacedKeys: " + invalid);
+
+        // every shard is saved once at the end instead of once per key
+        beginBatch();
+        try {
+            if (clear) {
+                for (int i = 0; i < shardCount; i++) {
+                    PersistentDataFile shard = shard(i);
+                    for (NamespacedKey key : shard.keys()) shard.remove(key);
+                }
+            }
+            for (Map.Entry<String, NamespacedKey> entry : keys.entrySet()) {
+                // stored under the normalized key, a raw "foo" would otherwise not be found as minecraft:foo
+                shard(entry.getValue()).putRaw(PersistentDataKeys.toRaw(entry.getValue()), compound.c(entry.getKey()));
+            }
+        } finally {
+            endBatch();
+        }
+    }
+}
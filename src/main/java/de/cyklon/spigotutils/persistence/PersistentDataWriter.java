@@ -0,0 +1,82 @@
+package de.cyklon.spigotutils.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class PersistentDataWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(PersistentDataWriter.class.getName());
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "SpigotUtils-PersistentDataWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private PersistentDataWriter() {}
+
+    static void execute(Runnable task) {
+        EXECUTOR.execute(guard(task));
+    }
+
+    static void schedule(Runnable task, long delayMillis) {
+        EXECUTOR.schedule(guard(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * writes the data into a temp file next to the target and renames it over the target,
+     * so a crash mid-write never leaves a truncated file behind.
+     * The temp file is forced to disk before the rename and the directory after it, so a power loss leaves either the old or the new file
+     */
+    static void writeAtomic(File file, byte[] data) throws IOException {
+        Path target = file.toPath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(true);
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory(target);
+    }
+
+    /**
+     * forces the directory entry of the file to disk, so a rename or a newly created file survives a power loss
+     */
+    static void forceDirectory(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory == null) return;
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // directories can not be opened on every platform (e.g. windows), the rename is still atomic there
+        }
+    }
+
+    private static Runnable guard(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                LOGGER.log(Level.SEVERE, "Unable to write persistent data", t);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,50 @@
+package de.cyklon.spigotutils.persistence;
+
+import net.minecraft.nbt.NBTBase;
+import org.bukkit.NamespacedKey;
+import org.bukkit.craftbukkit.v1_20_R1.persistence.CraftPersistentDataContainer;
+import org.bukkit.persistence.PersistentDataContainer;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * direct access to the nbt tags of a container, used by the primitive accessors of {@link PersistentDataHandler} to skip the boxing of {@link org.bukkit.persistence.PersistentDataType}
+ */
+interface RawDataContainer {
+
+    NBTBase getTag(NamespacedKey key);
+
+    /**
+     * @param expected the expected tag, {@code null} if the key is expected to be absent
+     * @return false if the current tag did not match
+     */
+    boolean compareAndSetTag(NamespacedKey key, NBTBase expected, NBTBase tag);
+
+    /**
+     * @return the raw view of the container or {@code null} if the container type is not supported
+     */
+    static RawDataContainer of(PersistentDataContainer container) {
+        if (container instanceof HandlePersistentDataContainer handle) return handle.isRaw() ? handle : null;
+        if (container instanceof RawDataContainer raw) return raw;
+        if (container instanceof CraftPersistentDataContainer craft) {
+            Map<String, NBTBase> tags = craft.getRaw();
+            return new RawDataContainer() {
+                @Override
+                public NBTBase getTag(NamespacedKey key) {
+                    return tags.get(PersistentDataKeys.toRaw(key));
+                }
+
+                @Override
+                public boolean compareAndSetTag(NamespacedKey key, NBTBase expected, NBTBase tag) {
+                    String raw = PersistentDataKeys.toRaw(key);
+                    if (!Objects.equals(tags.get(raw), expected)) return false;
+                    tags.put(raw, tag);
+                    return true;
+                }
+            };
+        }
+        return null;
+    }
+
+}
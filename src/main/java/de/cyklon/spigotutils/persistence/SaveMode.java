@@ -0,0 +1,25 @@
+package de.cyklon.spigotutils.persistence;
+
+public enum SaveMode {
+
+    /**
+     * the file is only written when {@link PersistentDataFile#save()} or {@link PersistentDataFile#flush()} is called
+     */
+    MANUAL,
+    /**
+     * every mutation rewrites the whole file on the calling thread
+     */
+    IMMEDIATE,
+    /**
+     * mutations only mark the file dirty, a background writer coalesces them into a single flush
+     * after the flush interval has passed or the dirty threshold has been reached
+     */
+    WRITE_BEHIND,
+    /**
+     * mutations are appended as small delta records to a journal next to the file. The background writer commits them in groups
+     * with one fsync every few milliseconds and compacts the journal into the file like in {@link #WRITE_BEHIND} mode.
+     * A crash loses at most the mutations of the last sync window
+     */
+    JOURNAL
+
+}
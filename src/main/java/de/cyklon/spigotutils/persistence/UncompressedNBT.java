@@ -0,0 +1,145 @@
+package de.cyklon.spigotutils.persistence;
+
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTCompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * helpers for the {@link DataFormat#MAPPED} format, a plain uncompressed root compound.
+ * <p>
+ * Entries are indexed by skipping their payloads and kept as slices of the mapped file until they are decoded.
+ */
+final class UncompressedNBT {
+
+    private static final byte TAG_END = 0;
+    private static final byte TAG_COMPOUND = 10;
+
+    private UncompressedNBT() {}
+
+    static ByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * @return every entry of the root compound as a slice containing {@code [type][name][payload]}
+     */
+    static Map<String, ByteBuffer> index(ByteBuffer buffer) throws IOException {
+        Map<String, ByteBuffer> entries = new HashMap<>();
+        if (!buffer.hasRemaining()) return entries;
+        try {
+            int pos = 0;
+            if (buffer.get(pos++) != TAG_COMPOUND) throw new IOException("The root tag is not a compound");
+            pos += 2 + Short.toUnsignedInt(buffer.getShort(pos));
+
+            byte type;
+            while ((type = buffer.get(pos)) != TAG_END) {
+                int start = pos++;
+                int nameLength = Short.toUnsignedInt(buffer.getShort(pos));
+                String name = name(buffer, pos + 2, nameLength);
+                pos = skip(buffer, type, pos + 2 + nameLength);
+                entries.put(name, buffer.slice(start, pos - start));
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new EOFException("Truncated nbt data");
+        }
+        return entries;
+    }
+
+    private static String name(ByteBuffer buffer, int pos, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        buffer.get(pos, bytes);
+        for (byte b : bytes) {
+            if (b < 0) {
+                // not plain ascii, decode as modified utf-8
+                byte[] utf = new byte[length + 2];
+                utf[0] = (byte) (length >>> 8);
+                utf[1] = (byte) length;
+                System.arraycopy(bytes, 0, utf, 2, length);
+                return new DataInputStream(new ByteArrayInputStream(utf)).readUTF();
+            }
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return the position after the payload of a tag with the given type
+     */
+    private static int skip(ByteBuffer buffer, byte type, int pos) throws IOException {
+        return switch (type) {
+            case 1 -> pos + 1;
+            case 2 -> pos + 2;
+            case 3, 5 -> pos + 4;
+            case 4, 6 -> pos + 8;
+            case 7 -> pos + 4 + buffer.getInt(pos);
+            case 8 -> pos + 2 + Short.toUnsignedInt(buffer.getShort(pos));
+            case 9 -> {
+                byte elementType = buffer.get(pos);
+                int size = buffer.getInt(pos + 1);
+                pos += 5;
+                for (int i = 0; i < size; i++) pos = skip(buffer, elementType, pos);
+                yield pos;
+            }
+            case 10 -> {
+                byte entryType;
+                while ((entryType = buffer.get(pos)) != TAG_END) {
+                    pos += 1;
+                    pos = skip(buffer, entryType, pos + 2 + Short.toUnsignedInt(buffer.getShort(pos)));
+                }
+                yield pos + 1;
+            }
+            case 11 -> pos + 4 + 4 * buffer.getInt(pos);
+            case 12 -> pos + 4 + 8 * buffer.getInt(pos);
+            default -> throw new IOException("Unknown tag type " + type);
+        };
+    }
+
+    /**
+     * decodes a single indexed entry by wrapping it into an anonymous root compound
+     */
+    static NBTBase decode(String key, ByteBuffer entry) throws IOException {
+        int length = entry.remaining();
+        byte[] bytes = new byte[length + 4];
+        bytes[0] = TAG_COMPOUND;
+        entry.get(entry.position(), bytes, 3, length);
+        NBTTagCompound compound = NBTCompressedStreamTools.a((DataInput) new DataInputStream(new ByteArrayInputStream(bytes)));
+        return compound.c(key);
+    }
+
+    static NBTTagCompound read(byte[] bytes) throws IOException {
+        try (DataInputStream dataInput = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return NBTCompressedStreamTools.a((DataInput) dataInput);
+        }
+    }
+
+    /**
+     * writes the decoded entries and copies the still encoded entries as they are
+     */
+    static byte[] write(NBTTagCompound decoded, Map<String, ByteBuffer> encoded) throws IOException {
+        ByteArrayOutputStream compound = new ByteArrayOutputStream();
+        NBTCompressedStreamTools.a(decoded, (DataOutput) new DataOutputStream(compound));
+        byte[] decodedBytes = compound.toByteArray();
+        if (encoded == null || encoded.isEmpty()) return decodedBytes;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(decodedBytes.length + 64 * encoded.size());
+        // root header and decoded entries, without the end tag
+        out.write(decodedBytes, 0, decodedBytes.length - 1);
+        for (ByteBuffer entry : encoded.values()) {
+            byte[] bytes = new byte[entry.remaining()];
+            entry.get(entry.position(), bytes);
+            out.write(bytes);
+        }
+        out.write(TAG_END);
+        return out.toByteArray();
+    }
+
+}
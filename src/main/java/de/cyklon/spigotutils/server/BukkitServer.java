@@ -3,12 +3,20 @@ package de.cyklon.spigotutils.server;
 import de.cyklon.spigotutils.nms.NMSReflection;
 import de.cyklon.spigotutils.nms.ReflectField;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+
 import static de.cyklon.spigotutils.nms.Classes.net.minecraft.server.MinecraftServer;
 
 public final class BukkitServer {
 
-	private static final ReflectField<?, Integer> CURRENT_TICK = NMSReflection.getField(MinecraftServer, "currentTick", Integer.class);
-	private static final ReflectField<?, Long> CURRENT_TICK_LONG = NMSReflection.getField(MinecraftServer, "currentTickLong", Long.class);
+	/**
+	 * static final, so the jit can inline the field reads, {@code (Object)int} and {@code (Object)long}
+	 */
+	private static final MethodHandle CURRENT_TICK = NMSReflection.getField(MinecraftServer, "currentTick", Integer.class).getGetter()
+			.asType(MethodType.methodType(int.class, Object.class));
+	private static final MethodHandle CURRENT_TICK_LONG = NMSReflection.getField(MinecraftServer, "currentTickLong", Long.class).getGetter()
+			.asType(MethodType.methodType(long.class, Object.class));
 	private static final ReflectField<?, double[]> RECENT_TPS = NMSReflection.getField(MinecraftServer, "recentTps", double[].class);
 
 	public static ServerConfiguration getConfig() {
@@ -16,11 +24,19 @@ public final class BukkitServer {
 	}
 
 	public static int getCurrentTick() {
-		return NMSReflection.getStaticValue(CURRENT_TICK);
+		try {
+			return (int) CURRENT_TICK.invokeExact((Object) null);
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	public static long getCurrentTickLong() {
-		return NMSReflection.getStaticValue(CURRENT_TICK_LONG);
+		try {
+			return (long) CURRENT_TICK_LONG.invokeExact((Object) null);
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	public static TPS getTPS() {
@@ -26,7 +26,15 @@ final class AdvServerScoreboard extends DefaultAdvScoreboard implements Listener
 	public void onQuit(PlayerQuitEvent event) {
 		if (isDeleted()) return;
 		Player player = event.getPlayer();
-		if (contains(player)) hide(player);
+		if (!contains(player)) return;
+		hide(player);
+		// players rejoin through onJoin, so the board does not keep every player that was ever online
+		removePlayer(player);
+	}
+
+	@Override
+	protected boolean isBroadcast() {
+		return true;
 	}
 
 	@Override
@@ -0,0 +1,41 @@
+package de.cyklon.spigotutils.ui.scoreboard;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * bounded lru cache of converted minecraft components, so lines switching between a few states are converted once.
+ * Converted components are only read when packets are written, so one instance can be shared by any number of packets
+ */
+final class ComponentCache<K> {
+
+	private final Map<K, Object> cache;
+
+	ComponentCache(int capacity) {
+		this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Object> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	Object get(K key, Converter<K> converter) throws Throwable {
+		synchronized (cache) {
+			Object component = cache.get(key);
+			if (component != null) return component;
+		}
+		// converted outside the lock, a concurrent miss converts the same key twice at worst
+		Object component = converter.convert(key);
+		synchronized (cache) {
+			cache.put(key, component);
+		}
+		return component;
+	}
+
+	@FunctionalInterface
+	interface Converter<K> {
+		Object convert(K key) throws Throwable;
+	}
+
+}
@@ -18,6 +18,7 @@ abstract class DefaultAdvScoreboard extends DefaultScoreboard<Component> {
 	private static final MethodHandle COMPONENT_METHOD;
 	private static final Object EMPTY_COMPONENT;
 	private static final boolean ADVENTURE_SUPPORT;
+	private static final ComponentCache<Component> COMPONENT_CACHE = new ComponentCache<>(512);
 
 	static {
 		ADVENTURE_SUPPORT = Version.isPaper();
@@ -44,15 +45,18 @@ abstract class DefaultAdvScoreboard extends DefaultScoreboard<Component> {
 	}
 
 	@Override
-	protected void sendLineChange(int score, int index) throws Throwable {
-		Component line = getLine(score);
-		sendPacket(teamPacket(score, TeamMode.UPDATE, index, line, null));
+	protected void sendLineChange(Component line, int index) throws Throwable {
+		sendPacket(teamPacket(TeamMode.UPDATE, index, line, null));
 
 	}
 
 	@Override
 	protected Object toMinecraftComponent(Component line) throws Throwable {
 		if (line==null) return EMPTY_COMPONENT;
+		return COMPONENT_CACHE.get(line, this::convert);
+	}
+
+	private Object convert(Component line) throws Throwable {
 		if (!ADVENTURE_SUPPORT) {
 			// If the server isn't running adventure natively, we convert the component to legacy text
 			// and then to a Minecraft chat component
@@ -1,6 +1,5 @@
 package de.cyklon.spigotutils.ui.scoreboard;
 
-import de.cyklon.spigotutils.tuple.Pair;
 import de.cyklon.spigotutils.version.MinecraftVersion;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
@@ -18,6 +17,7 @@ abstract class DefaultLegacyScoreboard extends DefaultScoreboard<String> {
 
 	private static final MethodHandle MESSAGE_FROM_STRING;
 	private static final Object EMPTY_MESSAGE;
+	private static final ComponentCache<String> COMPONENT_CACHE = new ComponentCache<>(512);
 
 	static {
 		try {
@@ -41,19 +41,25 @@ abstract class DefaultLegacyScoreboard extends DefaultScoreboard<String> {
 	}
 
 	@Override
-	protected synchronized void updateLines(Map<Integer, Pair<String, Integer>> lines) {
+	protected synchronized void updateLines(Map<Integer, String> changes, boolean clear) {
 		if (MinecraftVersion.v1_13.isHigherOrEqual(VERSION)) {
-			for (Map.Entry<Integer, Pair<String, Integer>> value : lines.entrySet()) {
-				if (value.getValue().first()!=null && value.getValue().first().length() > 30) throw new IllegalArgumentException("Line with the score " + value.getKey() + " is longer than 30 chars");
+			for (Map.Entry<Integer, String> value : changes.entrySet()) {
+				if (value.getValue()!=null && value.getValue().length() > 30) throw new IllegalArgumentException("Line with the score " + value.getKey() + " is longer than 30 chars");
 			}
 		}
-		super.updateLines(lines);
+		super.updateLines(changes, clear);
 	}
 
 	@Override
-	protected void sendLineChange(int score, int index) throws Throwable {
+	protected void sendLineChange(String line, int index) throws Throwable {
+		sendPacket(lineChangePacket(line, index));
+	}
+
+	/**
+	 * @return the team update splitting the line into prefix and suffix
+	 */
+	protected Object lineChangePacket(String line, int index) throws Throwable {
 		int maxLength = !MinecraftVersion.v1_13.isHigherOrEqual(VERSION) ? 16 : 1024;
-		String line = getLine(score);
 		String prefix;
 		String suffix = "";
 
@@ -82,13 +88,13 @@ abstract class DefaultLegacyScoreboard extends DefaultScoreboard<String> {
 			suffix = suffix.substring(0, maxLength);
 		}
 
-		sendPacket(teamPacket(score, TeamMode.UPDATE, index, prefix, suffix));
+		return teamPacket(TeamMode.UPDATE, index, prefix, suffix);
 	}
 
 	@Override
 	protected Object toMinecraftComponent(String line) throws Throwable {
 		if (line==null || line.isEmpty()) return EMPTY_MESSAGE;
-		return Array.get(MESSAGE_FROM_STRING.invoke(line), 0);
+		return COMPONENT_CACHE.get(line, l -> Array.get(MESSAGE_FROM_STRING.invoke(l), 0));
 	}
 
 	@Override
@@ -3,7 +3,7 @@ package de.cyklon.spigotutils.ui.scoreboard;
 import de.cyklon.spigotutils.event.scoreboard.ScoreboardCreateEvent;
 import de.cyklon.spigotutils.nms.PacketConstructor;
 import de.cyklon.spigotutils.nms.Packets;
-import de.cyklon.spigotutils.tuple.Pair;
+import de.cyklon.spigotutils.nms.PlayerConnectionCache;
 import de.cyklon.spigotutils.version.MinecraftVersion;
 import de.cyklon.spigotutils.version.Version;
 import org.bukkit.Bukkit;
@@ -17,24 +17,25 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 import de.cyklon.spigotutils.nms.Classes.net.minecraft.network.protocol.game;
 import static de.cyklon.spigotutils.nms.NMSReflection.*;
 
 abstract class DefaultScoreboard<T> implements ScoreboardUI<T> {
 
-	static final Collection<ScoreboardUI<?>> SCOREBOARDS = new ArrayList<>();
+	/**
+	 * makes ids unique within the same millisecond
+	 */
+	private static final AtomicLong ID_COUNTER = new AtomicLong();
 
-	private static final Map<Class<?>, Field[]> PACKETS = new HashMap<>(8);
 	protected static final String[] COLOR_CODES = Arrays.stream(ChatColor.values())
 			.map(Object::toString)
 			.toArray(String[]::new);
-	private static final int LIMIT = COLOR_CODES.length-10;
+	static final int LIMIT = COLOR_CODES.length-10;
 
 	//Current Server version
 	protected static final MinecraftVersion VERSION;
@@ -47,9 +48,46 @@ abstract class DefaultScoreboard<T> implements ScoreboardUI<T> {
 	private static final Class<?> CHAT_COMPONENT_CLASS;
 	private static final Class<?> CHAT_FORMAT_ENUM;
 	private static final Object RESET_FORMATTING;
-	private static final MethodHandle PLAYER_CONNECTION;
-	private static final MethodHandle SEND_PACKET;
-	private static final MethodHandle PLAYER_GET_HANDLE;
+	/**
+	 * {@code ClientboundBundlePacket(Iterable)}, null before 1.19.4
+	 */
+	private static final MethodHandle BUNDLE_PACKET;
+	/**
+	 * the client rejects bundles with more packets
+	 */
+	private static final int BUNDLE_LIMIT = 4096;
+
+	/*
+	 * setters of the packet fields, resolved once per logical slot.
+	 * Typed (Object, Object)void, or (Object, int)void for the int slots, and a no-op if the field does not exist in the current version
+	 */
+	private static final boolean COMPONENTS;
+	private static final MethodHandle OBJECTIVE_NAME;
+	private static final MethodHandle OBJECTIVE_MODE;
+	private static final MethodHandle OBJECTIVE_DISPLAY_NAME;
+	private static final MethodHandle OBJECTIVE_HEALTH_DISPLAY;
+	private static final MethodHandle OBJECTIVE_LEGACY_DISPLAY_NAME;
+	private static final MethodHandle DISPLAY_SLOT;
+	private static final MethodHandle DISPLAY_OBJECTIVE_NAME;
+	private static final MethodHandle SCORE_OWNER;
+	private static final MethodHandle SCORE_ACTION;
+	private static final MethodHandle SCORE_LEGACY_ACTION;
+	private static final MethodHandle SCORE_OBJECTIVE_NAME;
+	private static final MethodHandle SCORE_VALUE;
+	private static final MethodHandle TEAM_NAME;
+	private static final MethodHandle TEAM_MODE;
+	private static final MethodHandle TEAM_PARAMETERS;
+	private static final MethodHandle TEAM_PREFIX;
+	private static final MethodHandle TEAM_SUFFIX;
+	private static final MethodHandle TEAM_VISIBILITY;
+	private static final MethodHandle TEAM_COLLISIONS;
+	private static final MethodHandle TEAM_PLAYERS;
+	private static final MethodHandle PARAMETERS_DISPLAY_NAME;
+	private static final MethodHandle PARAMETERS_COLOR;
+	private static final MethodHandle PARAMETERS_PREFIX;
+	private static final MethodHandle PARAMETERS_SUFFIX;
+	private static final MethodHandle PARAMETERS_VISIBILITY;
+	private static final MethodHandle PARAMETERS_COLLISIONS;
 
 	// enums
 	private static final Class<?> DISPLAY_SLOT_TYPE;
@@ -68,21 +106,8 @@ abstract class DefaultScoreboard<T> implements ScoreboardUI<T> {
 			VERSION = Version.getVersion(Bukkit.getServer());
 
 			String gameProtocolPackage = "network.protocol.game";
-			Class<?> craftPlayerClass = obcClass("entity.CraftPlayer");
-			Class<?> entityPlayerClass = nmsClass("server.level", "EntityPlayer");
-			Class<?> playerConnectionClass = nmsClass("server.network", "PlayerConnection");
-			Class<?> packetClass = nmsClass("network.protocol", "Packet");
 			Class<?> sbTeamClass = MinecraftVersion.v1_17.isHigherOrEqual(VERSION)
 					? innerClass(game.PacketPlayOutScoreboardTeam, innerClass -> !innerClass.isEnum()) : null;
-			Field playerConnectionField = Arrays.stream(entityPlayerClass.getFields())
-					.filter(field -> field.getType().isAssignableFrom(playerConnectionClass))
-					.findFirst().orElseThrow(NoSuchFieldException::new);
-			Method sendPacketMethod = Stream.concat(
-							Arrays.stream(playerConnectionClass.getSuperclass().getMethods()),
-							Arrays.stream(playerConnectionClass.getMethods())
-					)
-					.filter(m -> m.getParameterCount() == 1 && m.getParameterTypes()[0] == packetClass)
-					.findFirst().orElseThrow(NoSuchMethodException::new);
 
 			Optional<Class<?>> displaySlotEnum = nmsOptionalClass("world.scores", "DisplaySlot");
 			CHAT_COMPONENT_CLASS = nmsClass("network.chat", "IChatBaseComponent");
@@ -90,23 +115,11 @@ abstract class DefaultScoreboard<T> implements ScoreboardUI<T> {
 			DISPLAY_SLOT_TYPE = displaySlotEnum.orElse(int.class);
 			RESET_FORMATTING = enumValueOf(CHAT_FORMAT_ENUM, "RESET", 21);
 			SIDEBAR_DISPLAY_SLOT = displaySlotEnum.isPresent() ? enumValueOf(DISPLAY_SLOT_TYPE, "SIDEBAR", 1) : 1;
-			PLAYER_GET_HANDLE = lookup.findVirtual(craftPlayerClass, "getHandle", MethodType.methodType(entityPlayerClass));
-			PLAYER_CONNECTION = lookup.unreflectGetter(playerConnectionField);
-			SEND_PACKET = lookup.unreflect(sendPacketMethod);
 			PACKET_SB_SERIALIZABLE_TEAM = sbTeamClass == null ? null : findPacketConstructor(sbTeamClass, lookup);
-
-			for (Class<?> clazz : Arrays.asList(game.PacketPlayOutScoreboardObjective, game.PacketPlayOutScoreboardDisplayObjective, game.PacketPlayOutScoreboardScore, game.PacketPlayOutScoreboardTeam, sbTeamClass)) {
-				if (clazz == null) {
-					continue;
-				}
-				Field[] fields = Arrays.stream(clazz.getDeclaredFields())
-						.filter(field -> !Modifier.isStatic(field.getModifiers()))
-						.toArray(Field[]::new);
-				for (Field field : fields) {
-					field.setAccessible(true);
-				}
-				PACKETS.put(clazz, fields);
-			}
+			Optional<Class<?>> bundlePacketClass = nmsOptionalClass(gameProtocolPackage, "ClientboundBundlePacket");
+			BUNDLE_PACKET = bundlePacketClass.isPresent()
+					? lookup.findConstructor(bundlePacketClass.get(), MethodType.methodType(void.class, Iterable.class))
+					: null;
 
 			if (MinecraftVersion.v1_8.isHigherOrEqual(VERSION)) {
 				String enumSbActionClass = MinecraftVersion.v1_13.isHigherOrEqual(VERSION)
@@ -124,87 +137,195 @@ abstract class DefaultScoreboard<T> implements ScoreboardUI<T> {
 				ENUM_SB_ACTION_CHANGE = null;
 				ENUM_SB_ACTION_REMOVE = null;
 			}
+
+			COMPONENTS = MinecraftVersion.v1_13.isHigherOrEqual(VERSION);
+			Predicate<Class<?>> componentType = COMPONENTS
+					? type -> type == String.class || type == CHAT_COMPONENT_CLASS
+					: type -> type == String.class;
+
+			Class<?> objective = game.PacketPlayOutScoreboardObjective;
+			OBJECTIVE_NAME = slot(lookup, objective, String.class, 0);
+			OBJECTIVE_MODE = intSlot(lookup, objective, 0);
+			OBJECTIVE_DISPLAY_NAME = slot(lookup, objective, componentType, 1, Object.class);
+			OBJECTIVE_HEALTH_DISPLAY = slot(lookup, objective, ENUM_SB_HEALTH_DISPLAY, 0);
+			OBJECTIVE_LEGACY_DISPLAY_NAME = slot(lookup, objective, String.class, 1);
+
+			Class<?> displayObjective = game.PacketPlayOutScoreboardDisplayObjective;
+			DISPLAY_SLOT = slot(lookup, displayObjective, DISPLAY_SLOT_TYPE, 0);
+			DISPLAY_OBJECTIVE_NAME = slot(lookup, displayObjective, String.class, 0);
+
+			Class<?> score = game.PacketPlayOutScoreboardScore;
+			SCORE_OWNER = slot(lookup, score, String.class, 0);
+			SCORE_ACTION = slot(lookup, score, ENUM_SB_ACTION, 0);
+			SCORE_LEGACY_ACTION = intSlot(lookup, score, 1);
+			SCORE_OBJECTIVE_NAME = slot(lookup, score, String.class, 1);
+			SCORE_VALUE = intSlot(lookup, score, 0);
+
+			Class<?> team = game.PacketPlayOutScoreboardTeam;
+			TEAM_NAME = slot(lookup, team, String.class, 0);
+			TEAM_MODE = intSlot(lookup, team, VERSION.name().contains("v1_8") ? 1 : 0);
+			TEAM_PARAMETERS = slot(lookup, team, Optional.class, 0);
+			TEAM_PREFIX = slot(lookup, team, componentType, 2, Object.class);
+			TEAM_SUFFIX = slot(lookup, team, componentType, 3, Object.class);
+			TEAM_VISIBILITY = slot(lookup, team, String.class, 4);
+			TEAM_COLLISIONS = slot(lookup, team, String.class, 5);
+			TEAM_PLAYERS = slot(lookup, team, Collection.class, 0);
+
+			PARAMETERS_DISPLAY_NAME = slot(lookup, sbTeamClass, componentType, 0, Object.class);
+			PARAMETERS_COLOR = slot(lookup, sbTeamClass, CHAT_FORMAT_ENUM, 0);
+			PARAMETERS_PREFIX = slot(lookup, sbTeamClass, componentType, 1, Object.class);
+			PARAMETERS_SUFFIX = slot(lookup, sbTeamClass, componentType, 2, Object.class);
+			PARAMETERS_VISIBILITY = slot(lookup, sbTeamClass, String.class, 0);
+			PARAMETERS_COLLISIONS = slot(lookup, sbTeamClass, String.class, 1);
 		} catch (Throwable t) {
 			throw new ExceptionInInitializerError(t);
 		}
 	}
 
 
+	private static MethodHandle slot(MethodHandles.Lookup lookup, Class<?> packetClass, Class<?> fieldType, int count) throws IllegalAccessException {
+		return slot(lookup, packetClass, type -> type == fieldType, count, Object.class);
+	}
+
+	private static MethodHandle intSlot(MethodHandles.Lookup lookup, Class<?> packetClass, int count) throws IllegalAccessException {
+		return slot(lookup, packetClass, type -> type == int.class, count, int.class);
+	}
+
+	/**
+	 * @return a setter for the count-th instance field whose type matches, or a no-op if there is no such field
+	 */
+	private static MethodHandle slot(MethodHandles.Lookup lookup, Class<?> packetClass, Predicate<Class<?>> fieldType, int count, Class<?> valueType) throws IllegalAccessException {
+		MethodType type = MethodType.methodType(void.class, Object.class, valueType);
+		if (packetClass != null) {
+			int i = 0;
+			for (Field field : packetClass.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()) || !fieldType.test(field.getType())) continue;
+				if (i++ == count) {
+					field.setAccessible(true);
+					return lookup.unreflectSetter(field).asType(type);
+				}
+			}
+		}
+		return MethodHandles.empty(type);
+	}
+
 	private final String id;
 	private final List<Player> players;
 	private final Plugin plugin;
 
-	private final Map<Integer, Pair<T, Integer>> lines = new HashMap<>();
-	private Map<Integer, Pair<T, Integer>> newLines = null;
+	/**
+	 * lines by descending score, the first {@link #LIMIT} are visible
+	 */
+	private final NavigableMap<Integer, T> lines = new TreeMap<>(Comparator.reverseOrder());
+	/**
+	 * line changes staged until {@link #update()}, a {@code null} text removes the line
+	 */
+	private final Map<Integer, T> changes = new HashMap<>();
+	private boolean cleared;
+
+	/*
+	 * every slot owns a fixed entry and team, created together with the objective.
+	 * A line only takes a slot while it is visible, so text changes are a single team update
+	 * and lines entering the visible range take over the slot of a line that left it
+	 */
+	private final Map<Integer, Integer> slots = new HashMap<>();
+	@SuppressWarnings("unchecked")
+	private final T[] slotLines = (T[]) new Object[LIMIT];
+	private final Deque<Integer> freeSlots = new ArrayDeque<>(LIMIT);
 	private T title = emptyLine();
 
 	private boolean deleted;
+	/**
+	 * packets collected by {@link #sendPacket(Object)} while a batch is open. Guarded by the monitor of the scoreboard,
+	 * every method opening a batch and {@link #sendPacket(Object)} itself are synchronized, so a packet sent from another thread
+	 * waits for the open batch to be flushed instead of being added to it
+	 */
+	private List<Object> batch;
+	/**
+	 * the bundled packets of {@link #show(Player)} and {@link #hide(Player)},
+	 * reused for every viewer until the title or the lines change. Only kept for broadcast scoreboards
+	 */
+	private List<Object> showPackets, hidePackets;
+
+	private final UpdateQueue.Entry<DefaultScoreboard<?>> schedule = ScoreboardScheduler.register(this);
 
 	protected DefaultScoreboard(@NotNull Plugin plugin, @NotNull Player... players) {
 		this.players = new ArrayList<>(List.of(players));
 		this.plugin = plugin;
-		this.id = "scui-" + Long.toHexString(System.currentTimeMillis());
+		PlayerConnectionCache.register(plugin);
+		// base 36 keeps the name short for versions limiting objective names to 16 chars
+		this.id = "scui-" + Long.toString(System.currentTimeMillis(), 36) + Long.toString(ID_COUNTER.getAndIncrement(), 36);
+		for (int slot = 0; slot < LIMIT; slot++) freeSlots.add(slot);
+		batch = new ArrayList<>();
 		try {
 			sendPacket(objectivePacket(ObjectiveMode.CREATE));
 			sendPacket(displayObjectivePacket());
-			SCOREBOARDS.add(this);
+			for (int slot = 0; slot < LIMIT; slot++) sendPacket(teamPacket(TeamMode.CREATE, slot));
+			flushBatch(this.players);
+			ScoreboardRegistry.register(this);
 			Bukkit.getScheduler().runTask(plugin, () -> Bukkit.getPluginManager().callEvent(new ScoreboardCreateEvent(this)));
 		} catch (Throwable t) {
 			this.deleted = true;
 			throw new RuntimeException("Unable to create scoreboard", t);
+		} finally {
+			batch = null;
 		}
 	}
 
 	protected boolean addPlayer(Player player) {
 		if (contains(player)) return false;
 		players.add(player);
+		if (!deleted) ScoreboardRegistry.addViewer(this, player.getUniqueId());
 		return true;
 	}
 
-	protected void show(Player player) {
+	protected synchronized void show(Player player) {
+		if (showPackets != null) {
+			send(List.of(player), showPackets);
+			return;
+		}
+		batch = new ArrayList<>();
 		try {
-			sendPacket(player, objectivePacket(ObjectiveMode.CREATE));
-			sendPacket(player, displayObjectivePacket());
-
-			Map<Integer, Pair<T, Integer>> topLines = getTopEntries(this.lines, LIMIT);
-
-			int i = 0;
-			for (Integer score : topLines.keySet()) {
-
-				Pair<T, Integer> line = topLines.get(score);
-				int i1 = line.second();
-				if (i1==-1) {
-					i1 = i;
-					topLines.put(score, new Pair<>(line.first(), i));
-				}
-				i++;
-				sendPacket(scorePacket(score, ScoreboardAction.CHANGE, i1));
-				sendPacket(teamPacket(score, TeamMode.CREATE, i1));
+			sendPacket(objectivePacket(ObjectiveMode.CREATE));
+			sendPacket(displayObjectivePacket());
+			for (int slot = 0; slot < LIMIT; slot++) {
+				sendPacket(teamPacket(TeamMode.CREATE, slot));
+				if (slotLines[slot] != null) sendLineChange(slotLines[slot], slot);
 			}
-
-			for (Integer score : topLines.keySet()) {
-				sendLineChange(score, topLines.get(score).second());
+			for (Map.Entry<Integer, Integer> slot : slots.entrySet()) {
+				sendPacket(scorePacket(slot.getKey(), ScoreboardAction.CHANGE, slot.getValue()));
 			}
+			List<Object> packets = flushBatch(List.of(player));
+			if (isBroadcast()) showPackets = packets;
 		} catch (Throwable t) {
 			throw new RuntimeException("Unable to show for player '" + player.getName() + "'", t);
+		} finally {
+			batch = null;
 		}
 	}
 
 	protected boolean removePlayer(Player player) {
 		if (!contains(player)) return false;
 		players.remove(player);
+		ScoreboardRegistry.removeViewer(this, player.getUniqueId());
 		return true;
 	}
 
-	protected void hide(Player player) {
+	protected synchronized void hide(Player player) {
+		if (hidePackets != null) {
+			send(List.of(player), hidePackets);
+			return;
+		}
+		batch = new ArrayList<>();
 		try {
-			for (Integer score : lines.keySet()) {
-				int i = lines.get(score).second();
-				if (i!=-1) sendPacket(player, teamPacket(score, TeamMode.REMOVE, i));
-			}
-			sendPacket(player, objectivePacket(ObjectiveMode.REMOVE));
+			for (int slot = 0; slot < LIMIT; slot++) sendPacket(teamPacket(TeamMode.REMOVE, slot));
+			sendPacket(objectivePacket(ObjectiveMode.REMOVE));
+			List<Object> packets = flushBatch(List.of(player));
+			if (isBroadcast()) hidePackets = packets;
 		} catch (Throwable t) {
 			throw new RuntimeException("Unable to hide for player '" + player.getName() + "'", t);
+		} finally {
+			batch = null;
 		}
 	}
 
@@ -212,11 +333,31 @@ abstract class DefaultScoreboard<T> implements ScoreboardUI<T> {
 		return players;
 	}
 
+	List<UUID> getViewers() {
+		List<UUID> viewers = new ArrayList<>(players.size());
+		for (Player player : players) viewers.add(player.getUniqueId());
+		return viewers;
+	}
+
+	/**
+	 * a broadcast scoreboard shows the same content to every viewer,
+	 * so the packets of {@link #show(Player)} and {@link #hide(Player)} are built once and shared
+	 */
+	protected boolean isBroadcast() {
+		return false;
+	}
+
+	private void invalidate() {
+		showPackets = null;
+		hidePackets = null;
+	}
+
 	@Override
-	public void setTitle(@Nullable T title) {
+	public synchronized void setTitle(@Nullable T title) {
 		if (title==null) title = emptyLine();
 		if (this.title.equals(title)) return;
 		this.title = title;
+		invalidate();
 		try {
 			sendPacket(objectivePacket(ObjectiveMode.UPDATE));
 		} catch (Throwable t) {
@@ -232,8 +373,7 @@ abstract class DefaultScoreboard<T> implements ScoreboardUI<T> {
 	@Override
 	public void setLine(int score, @Nullable T text) {
 		if (text==null) text = emptyLine();
-		if (newLines==null) newLines = new HashMap<>(lines);
-		newLines.put(score, new Pair<>(text, -1));
+		changes.put(score, text);
 	}
 
 	@Override
@@ -243,68 +383,107 @@ abstract class DefaultScoreboard<T> implements ScoreboardUI<T> {
 
 	@Override
 	public T getLine(int score) {
-		return lines.get(score).first();
+		return lines.get(score);
 	}
 
 	@Override
 	public @NotNull List<T> getLines() {
-		return new ArrayList<>(lines.values()).stream().map(Pair::first).toList();
+		return List.copyOf(lines.values());
 	}
 
 	@Override
 	public void removeLine(int score) {
-		if (newLines==null) newLines = new HashMap<>(lines);
-		newLines.remove(score);
+		changes.put(score, null);
 	}
 
 	@Override
 	public void clearLines() {
-		newLines = new HashMap<>();
+		changes.clear();
+		cleared = true;
+	}
+
+	@Override
+	public void scheduleUpdate() {
+		ScoreboardScheduler.markDirty(this);
 	}
 
 	@Override
 	public void update() {
-		if (newLines!=null) {
-			updateLines(newLines);
-			newLines = null;
+		if (cleared || !changes.isEmpty()) {
+			updateLines(changes, cleared);
+			changes.clear();
+			cleared = false;
 		}
 	}
 
-	protected synchronized void updateLines(Map<Integer, Pair<T, Integer>> lines) {
-		Objects.requireNonNull(lines, "lines");
-
-		Map<Integer, Pair<T, Integer>> oldLines = new HashMap<>(this.lines);
-		this.lines.clear();
-		this.lines.putAll(lines);
-
-		Map<Integer, Pair<T, Integer>> topLines = getTopEntries(this.lines, LIMIT);
+	/**
+	 * applies the changes and sends only the difference of the visible lines.
+	 * Lines that stay visible keep their slot, so moving them costs nothing and changing their text is one team update
+	 *
+	 * @param changes the new text by score, {@code null} removes the line
+	 * @param clear if all lines are removed before applying the changes
+	 */
+	protected synchronized void updateLines(Map<Integer, T> changes, boolean clear) {
+		Objects.requireNonNull(changes, "changes");
+		invalidate();
+		if (clear) lines.clear();
+		for (Map.Entry<Integer, T> change : changes.entrySet()) {
+			if (change.getValue()==null) lines.remove(change.getKey());
+			else lines.put(change.getKey(), change.getValue());
+		}
 
+		NavigableMap<Integer, T> visible = visibleLines();
+		batch = new ArrayList<>();
 		try {
-			for (Integer score : oldLines.keySet()) {
-				if (!topLines.containsKey(score)) {
-					int i = oldLines.get(score).second();
-					if (i==-1) i = 0;
-					sendPacket(teamPacket(score, TeamMode.REMOVE, i));
-					sendPacket(scorePacket(score, ScoreboardAction.REMOVE, i));
+			// slots of lines that left the visible range, entering lines reuse them instead of hiding and showing an entry
+			List<Integer> released = new ArrayList<>();
+			for (Iterator<Map.Entry<Integer, Integer>> it = slots.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<Integer, Integer> slot = it.next();
+				if (!visible.containsKey(slot.getKey())) {
+					released.add(slot.getValue());
+					it.remove();
 				}
 			}
-			int i = 0;
-			for (Integer score : topLines.keySet()) {
-				if (!oldLines.containsKey(score)) {
-					this.lines.put(score, new Pair<>(topLines.get(score).first(), i));
-					sendPacket(scorePacket(score, ScoreboardAction.CHANGE, i));
-					sendPacket(teamPacket(score, TeamMode.CREATE, i++));
+
+			for (Map.Entry<Integer, T> line : visible.entrySet()) {
+				int score = line.getKey();
+				Integer slot = slots.get(score);
+				if (slot==null) {
+					slot = released.isEmpty() ? freeSlots.pop() : released.remove(released.size() - 1);
+					slots.put(score, slot);
+					sendPacket(scorePacket(score, ScoreboardAction.CHANGE, slot));
+				}
+				if (!line.getValue().equals(slotLines[slot])) {
+					slotLines[slot] = line.getValue();
+					sendLineChange(line.getValue(), slot);
 				}
 			}
 
-			for (Integer score : topLines.keySet()) {
-				if (!topLines.get(score).equals(oldLines.get(score))) sendLineChange(score, this.lines.get(score).second());
+			for (int slot : released) {
+				sendPacket(scorePacket(0, ScoreboardAction.REMOVE, slot));
+				// the text of an unused slot is not kept, a line taking it over is always sent
+				slotLines[slot] = null;
+				slotReleased(slot);
+				freeSlots.push(slot);
 			}
+			flushBatch(players);
 		} catch (Throwable t) {
 			throw new RuntimeException("Unable to update scoreboard lines", t);
+		} finally {
+			batch = null;
 		}
 	}
 
+	/**
+	 * @return a view of the lines with the {@link #LIMIT} highest scores
+	 */
+	private NavigableMap<Integer, T> visibleLines() {
+		if (lines.size() <= LIMIT) return lines;
+		Iterator<Integer> scores = lines.navigableKeySet().iterator();
+		for (int i = 1; i < LIMIT; i++) scores.next();
+		return lines.headMap(scores.next(), true);
+	}
+
 	@Override
 	public @NotNull String getId() {
 		return id;
@@ -315,23 +494,32 @@ abstract class DefaultScoreboard<T> implements ScoreboardUI<T> {
 		return deleted;
 	}
 
+	/**
+	 * @return the state of the {@link ScoreboardScheduler} for this scoreboard
+	 */
+	UpdateQueue.Entry<DefaultScoreboard<?>> getSchedule() {
+		return schedule;
+	}
+
 	@Override
 	public int size() {
 		return lines.size();
 	}
 
 	@Override
-	public void delete() {
+	public synchronized void delete() {
+		invalidate();
+		batch = new ArrayList<>();
 		try {
-			for (Integer score : lines.keySet()) {
-				int i = lines.get(score).second();
-				if (i!=-1) sendPacket(teamPacket(score, TeamMode.REMOVE, i));
-			}
+			for (int slot = 0; slot < LIMIT; slot++) sendPacket(teamPacket(TeamMode.REMOVE, slot));
 			sendPacket(objectivePacket(ObjectiveMode.REMOVE));
-			SCOREBOARDS.remove(this);
+			flushBatch(players);
+			ScoreboardRegistry.unregister(this);
 			this.deleted = true;
 		} catch (Throwable t) {
 			throw new RuntimeException("Unable to delete scoreboard", t);
+		} finally {
+			batch = null;
 		}
 	}
 
@@ -340,7 +528,13 @@ abstract class DefaultScoreboard<T> implements ScoreboardUI<T> {
 		return plugin;
 	}
 
-	protected abstract void sendLineChange(int score, int index) throws Throwable;
+	protected abstract void sendLineChange(T line, int index) throws Throwable;
+
+	/**
+	 * called when the line of the slot left the visible range
+	 */
+	protected void slotReleased(int index) {}
+
 	protected abstract Object toMinecraftComponent(T line) throws Throwable;
 	protected abstract String serializeLine(T line);
 	protected abstract T emptyLine();
@@ -348,17 +542,17 @@ abstract class DefaultScoreboard<T> implements ScoreboardUI<T> {
 	private Object objectivePacket(ObjectiveMode mode) throws Throwable {
 		Object packet = Packets.PacketPlayOutScoreboardObjective.invoke();
 
-		setField(packet, String.class, this.id);
-		setField(packet, int.class, mode.ordinal());
+		OBJECTIVE_NAME.invokeExact(packet, (Object) this.id);
+		OBJECTIVE_MODE.invokeExact(packet, mode.ordinal());
 
 		if (mode != ObjectiveMode.REMOVE) {
-			setComponentField(packet, this.title, 1);
+			setComponent(OBJECTIVE_DISPLAY_NAME, packet, this.title);
 
 			if (MinecraftVersion.v1_8.isHigherOrEqual(VERSION)) {
-				setField(packet, ENUM_SB_HEALTH_DISPLAY, ENUM_SB_HEALTH_DISPLAY_INTEGER);
+				OBJECTIVE_HEALTH_DISPLAY.invokeExact(packet, ENUM_SB_HEALTH_DISPLAY_INTEGER);
 			}
 		} else if (VERSION.name().contains("v1_7")) {
-			setField(packet, String.class, "", 1);
+			OBJECTIVE_LEGACY_DISPLAY_NAME.invokeExact(packet, (Object) "");
 		}
 		return packet;
 	}
@@ -366,37 +560,37 @@ abstract class DefaultScoreboard<T> implements ScoreboardUI<T> {
 	private Object displayObjectivePacket() throws Throwable {
 		Object packet = Packets.PacketPlayOutScoreboardDisplayObjective.invoke();
 
-		setField(packet, DISPLAY_SLOT_TYPE, SIDEBAR_DISPLAY_SLOT); // Position
-		setField(packet, String.class, this.id); // Score Name
+		DISPLAY_SLOT.invokeExact(packet, SIDEBAR_DISPLAY_SLOT); // Position
+		DISPLAY_OBJECTIVE_NAME.invokeExact(packet, (Object) this.id); // Score Name
 		return packet;
 	}
 
 	private Object scorePacket(int score, ScoreboardAction action, int index) throws Throwable {
 		Object packet = Packets.PacketPlayOutScoreboardScore.invoke();
 
-		setField(packet, String.class, COLOR_CODES[index], 0); // Player Name
+		SCORE_OWNER.invokeExact(packet, (Object) COLOR_CODES[index]); // Player Name
 
 		if (MinecraftVersion.v1_8.isHigherOrEqual(VERSION)) {
 			Object enumAction = action == ScoreboardAction.REMOVE
 					? ENUM_SB_ACTION_REMOVE : ENUM_SB_ACTION_CHANGE;
-			setField(packet, ENUM_SB_ACTION, enumAction);
+			SCORE_ACTION.invokeExact(packet, enumAction);
 		} else {
-			setField(packet, int.class, action.ordinal(), 1); // Action
+			SCORE_LEGACY_ACTION.invokeExact(packet, action.ordinal()); // Action
 		}
 
 		if (action == ScoreboardAction.CHANGE) {
-			setField(packet, String.class, this.id, 1); // Objective Name
-			setField(packet, int.class, score); // Score
+			SCORE_OBJECTIVE_NAME.invokeExact(packet, (Object) this.id); // Objective Name
+			SCORE_VALUE.invokeExact(packet, score); // Score
 		}
 
 		return packet;
 	}
 
-	private Object teamPacket(int score, TeamMode mode, int index) throws Throwable {
-		return teamPacket(score, mode, index, null, null);
+	private Object teamPacket(TeamMode mode, int index) throws Throwable {
+		return teamPacket(mode, index, null, null);
 	}
 
-	protected Object teamPacket(int score, TeamMode mode, int index, T prefix, T suffix)
+	protected Object teamPacket(TeamMode mode, int index, T prefix, T suffix)
 			throws Throwable {
 		if (mode == TeamMode.ADD_PLAYERS || mode == TeamMode.REMOVE_PLAYERS) {
 			throw new UnsupportedOperationException();
@@ -404,30 +598,30 @@ abstract class DefaultScoreboard<T> implements ScoreboardUI<T> {
 
 		Object packet = Packets.PacketPlayOutScoreboardTeam.invoke();
 
-		setField(packet, String.class, this.id + ':' + score); // Team name
-		setField(packet, int.class, mode.ordinal(), VERSION.name().contains("v1_8") ? 1 : 0); // Update mode
+		TEAM_NAME.invokeExact(packet, (Object) (this.id + ':' + index)); // Team name
+		TEAM_MODE.invokeExact(packet, mode.ordinal()); // Update mode
 
 		if (mode == TeamMode.REMOVE) return packet;
 
 		if (MinecraftVersion.v1_17.isHigherOrEqual(VERSION)) {
 			Object team = PACKET_SB_SERIALIZABLE_TEAM.invoke();
 			// Since the packet is initialized with null values, we need to change more things.
-			setComponentField(team, null, 0); // Display name
-			setField(team, CHAT_FORMAT_ENUM, RESET_FORMATTING); // Color
-			setComponentField(team, prefix, 1); // Prefix
-			setComponentField(team, suffix, 2); // Suffix
-			setField(team, String.class, "always", 0); // Visibility
-			setField(team, String.class, "always", 1); // Collisions
-			setField(packet, Optional.class, Optional.of(team));
+			setComponent(PARAMETERS_DISPLAY_NAME, team, null); // Display name
+			PARAMETERS_COLOR.invokeExact(team, RESET_FORMATTING); // Color
+			setComponent(PARAMETERS_PREFIX, team, prefix); // Prefix
+			setComponent(PARAMETERS_SUFFIX, team, suffix); // Suffix
+			PARAMETERS_VISIBILITY.invokeExact(team, (Object) "always"); // Visibility
+			PARAMETERS_COLLISIONS.invokeExact(team, (Object) "always"); // Collisions
+			TEAM_PARAMETERS.invokeExact(packet, (Object) Optional.of(team));
 		} else {
-			setComponentField(packet, prefix, 2); // Prefix
-			setComponentField(packet, suffix, 3); // Suffix
-			setField(packet, String.class, "always", 4); // Visibility for 1.8+
-			setField(packet, String.class, "always", 5); // Collisions for 1.9+
+			setComponent(TEAM_PREFIX, packet, prefix); // Prefix
+			setComponent(TEAM_SUFFIX, packet, suffix); // Suffix
+			TEAM_VISIBILITY.invokeExact(packet, (Object) "always"); // Visibility for 1.8+
+			TEAM_COLLISIONS.invokeExact(packet, (Object) "always"); // Collisions for 1.9+
 		}
 
 		if (mode == TeamMode.CREATE) {
-			setField(packet, Collection.class, Collections.singletonList(COLOR_CODES[index])); // Players in the team
+			TEAM_PLAYERS.invokeExact(packet, (Object) Collections.singletonList(COLOR_CODES[index])); // Players in the team
 		}
 
 		return packet;
@@ -442,61 +636,83 @@ abstract class DefaultScoreboard<T> implements ScoreboardUI<T> {
 		return false;
 	}
 
-	protected void sendPacket(Object packet) throws Throwable {
+	/**
+	 * sends the packet to all players, or adds it to the open batch
+	 */
+	protected synchronized void sendPacket(Object packet) throws Throwable {
 		if (this.deleted) {
 			throw new IllegalStateException("This Scoreboard is deleted");
 		}
+		if (batch != null) {
+			batch.add(packet);
+			return;
+		}
 		for (Player player : players) {
 			sendPacket(player, packet);
 		}
 	}
 
-	private void sendPacket(Player player, Object packet) throws Throwable {
+	/**
+	 * sends the collected packets to every target, as bundles where the server supports them.
+	 * The connection of each player is only resolved once and the client applies a bundle at once
+	 *
+	 * @return the sent packets, they can be sent again to further players
+	 */
+	private List<Object> flushBatch(Collection<Player> targets) throws Throwable {
+		List<Object> packets = batch;
+		batch = null;
+		if (packets == null || packets.isEmpty()) return List.of();
+		packets = bundle(packets);
+		send(targets, packets);
+		return packets;
+	}
+
+	/**
+	 * sends packets only to the given player, bundled like a batch
+	 */
+	protected void sendPackets(Player player, List<Object> packets) throws Throwable {
 		if (this.deleted) {
 			throw new IllegalStateException("This Scoreboard is deleted");
 		}
-		if (player.isOnline()) {
-			Object entityPlayer = PLAYER_GET_HANDLE.invoke(player);
-			Object playerConnection = PLAYER_CONNECTION.invoke(entityPlayer);
-			SEND_PACKET.invoke(playerConnection, packet);
-		}
-	}
-
-	private void setField(Object object, Class<?> fieldType, Object value)
-			throws ReflectiveOperationException {
-		setField(object, fieldType, value, 0);
+		if (!packets.isEmpty()) send(List.of(player), bundle(packets));
 	}
 
-	private void setField(Object packet, Class<?> fieldType, Object value, int count)
-			throws ReflectiveOperationException {
-		int i = 0;
-		for (Field field : PACKETS.get(packet.getClass())) {
-			if (field.getType() == fieldType && count == i++) {
-				field.set(packet, value);
+	private List<Object> bundle(List<Object> packets) throws Throwable {
+		if (BUNDLE_PACKET != null && packets.size() > 1) {
+			List<Object> bundles = new ArrayList<>(packets.size() / BUNDLE_LIMIT + 1);
+			for (int i = 0; i < packets.size(); i += BUNDLE_LIMIT) {
+				bundles.add(BUNDLE_PACKET.invoke((Iterable<?>) new ArrayList<>(packets.subList(i, Math.min(packets.size(), i + BUNDLE_LIMIT)))));
 			}
+			packets = bundles;
 		}
-	}
-
-	private void setComponentField(Object packet, T value, int count) throws Throwable {
-		if (!MinecraftVersion.v1_13.isHigherOrEqual(VERSION)) {
-			String line = value != null ? serializeLine(value) : "";
-			setField(packet, String.class, line, count);
-			return;
+		return packets;
+	}
+
+	/**
+	 * sends the same packet objects to every target, packets are not modified once built
+	 */
+	private void send(Collection<Player> targets, List<Object> packets) {
+		int sent = 0;
+		for (Player player : targets) {
+			UUID uuid = player.getUniqueId();
+			for (Object packet : packets) {
+				if (!PlayerConnectionCache.send(uuid, packet)) break;
+				sent++;
+			}
 		}
+		ScoreboardScheduler.countPackets(sent);
+	}
 
-		int i = 0;
-		for (Field field : PACKETS.get(packet.getClass())) {
-			if ((field.getType() == String.class || field.getType() == CHAT_COMPONENT_CLASS) && count == i++) {
-				field.set(packet, toMinecraftComponent(value));
-			}
+	private void sendPacket(Player player, Object packet) throws Throwable {
+		if (this.deleted) {
+			throw new IllegalStateException("This Scoreboard is deleted");
 		}
+		if (PlayerConnectionCache.send(player.getUniqueId(), packet)) ScoreboardScheduler.countPackets(1);
 	}
 
-	private Map<Integer, Pair<T, Integer>> getTopEntries(Map<Integer, Pair<T, Integer>> map, int limit) {
-		List<Map.Entry<Integer, Pair<T, Integer>>> entryList = new ArrayList<>(map.entrySet());
-		entryList.sort((e1, e2) -> e2.getKey().compareTo(e1.getKey()));
-		if (entryList.size()>limit) entryList = entryList.subList(0, limit);
-		return entryList.stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+	private void setComponent(MethodHandle slot, Object packet, T value) throws Throwable {
+		Object component = COMPONENTS ? toMinecraftComponent(value) : (value != null ? serializeLine(value) : "");
+		slot.invokeExact(packet, component);
 	}
 
 	private enum ObjectiveMode {
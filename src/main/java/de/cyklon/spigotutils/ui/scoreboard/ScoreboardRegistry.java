@@ -0,0 +1,61 @@
+package de.cyklon.spigotutils.ui.scoreboard;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * the living scoreboards by id and by the uuid of their viewers.
+ * Every operation is a hash lookup and the views can be iterated from any thread while boards are added or removed
+ */
+final class ScoreboardRegistry {
+
+	private static final Map<String, DefaultScoreboard<?>> BY_ID = new ConcurrentHashMap<>();
+	private static final Map<UUID, Set<DefaultScoreboard<?>>> BY_VIEWER = new ConcurrentHashMap<>();
+
+	private ScoreboardRegistry() {}
+
+	static void register(DefaultScoreboard<?> scoreboard) {
+		BY_ID.put(scoreboard.getId(), scoreboard);
+		for (UUID viewer : scoreboard.getViewers()) addViewer(scoreboard, viewer);
+	}
+
+	static void unregister(DefaultScoreboard<?> scoreboard) {
+		if (!BY_ID.remove(scoreboard.getId(), scoreboard)) return;
+		for (UUID viewer : scoreboard.getViewers()) removeViewer(scoreboard, viewer);
+	}
+
+	static void addViewer(DefaultScoreboard<?> scoreboard, UUID viewer) {
+		BY_VIEWER.computeIfAbsent(viewer, uuid -> ConcurrentHashMap.newKeySet()).add(scoreboard);
+	}
+
+	static void removeViewer(DefaultScoreboard<?> scoreboard, UUID viewer) {
+		// drops the set atomically once it is empty, so the index does not keep every player that was ever online
+		BY_VIEWER.computeIfPresent(viewer, (uuid, scoreboards) -> scoreboards.remove(scoreboard) && scoreboards.isEmpty() ? null : scoreboards);
+	}
+
+	static @Nullable DefaultScoreboard<?> get(String id) {
+		return BY_ID.get(id);
+	}
+
+	/**
+	 * @return a weakly consistent view
+	 */
+	static Collection<DefaultScoreboard<?>> all() {
+		return Collections.unmodifiableCollection(BY_ID.values());
+	}
+
+	/**
+	 * @return a weakly consistent view
+	 */
+	static Collection<DefaultScoreboard<?>> byViewer(UUID viewer) {
+		Set<DefaultScoreboard<?>> scoreboards = BY_VIEWER.get(viewer);
+		return scoreboards == null ? Collections.emptySet() : Collections.unmodifiableSet(scoreboards);
+	}
+
+}
@@ -0,0 +1,122 @@
+package de.cyklon.spigotutils.ui.scoreboard;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * flushes scoreboards marked by {@link ScoreboardUI#scheduleUpdate()} on the main thread,
+ * at most once per tick or at the rate configured with {@link #setUpdateRate(ScoreboardUI, int)}.
+ * <p>
+ * Boards with the same rate start at different ticks, so they do not all flush together,
+ * and {@link #setMaxUpdatesPerTick(int)} caps how many boards a single tick flushes, the remaining ones follow in the next ticks.
+ * Every board gets its phase when it is created, the cap is {@value UpdateQueue#DEFAULT_MAX_UPDATES_PER_TICK} boards per tick by default.
+ * The scheduler has to be used from the main thread
+ */
+public final class ScoreboardScheduler {
+
+	private static final UpdateQueue<DefaultScoreboard<?>> QUEUE = new UpdateQueue<>();
+	private static final AtomicInteger PACKETS = new AtomicInteger();
+
+	private static BukkitTask task;
+
+	private static int packetsLastTick;
+	private static int updatesLastTick;
+
+	private ScoreboardScheduler() {}
+
+	/**
+	 * creates the scheduling state of a new scoreboard, which also assigns its phase
+	 */
+	static UpdateQueue.Entry<DefaultScoreboard<?>> register(@NotNull DefaultScoreboard<?> board) {
+		return QUEUE.register(board);
+	}
+
+	/**
+	 * marks the scoreboard dirty, its staged changes are sent with the next flush it is due for
+	 */
+	public static void markDirty(@NotNull ScoreboardUI<?> scoreboard) {
+		DefaultScoreboard<?> board = board(scoreboard);
+		if (board.isDeleted() || !QUEUE.markDirty(board.getSchedule())) return;
+		if (task == null || task.isCancelled()) {
+			// packets sent while no task was running do not belong to its first tick
+			PACKETS.set(0);
+			task = Bukkit.getScheduler().runTaskTimer(board.getCreator(), ScoreboardScheduler::tick, 1, 1);
+		}
+	}
+
+	/**
+	 * limits how often the scoreboard is flushed, one update per tick by default
+	 *
+	 * @param hz the updates per second, from 1 to 20
+	 */
+	public static void setUpdateRate(@NotNull ScoreboardUI<?> scoreboard, int hz) {
+		QUEUE.setUpdateRate(board(scoreboard).getSchedule(), hz);
+	}
+
+	/**
+	 * @return the rate passed to {@link #setUpdateRate(ScoreboardUI, int)}, the effective rate is 20 divided by the whole number of ticks between updates
+	 */
+	public static int getUpdateRate(@NotNull ScoreboardUI<?> scoreboard) {
+		return QUEUE.getUpdateRate(board(scoreboard).getSchedule());
+	}
+
+	/**
+	 * @param max the most scoreboards flushed in a single tick, {@value UpdateQueue#DEFAULT_MAX_UPDATES_PER_TICK} by default
+	 */
+	public static void setMaxUpdatesPerTick(int max) {
+		QUEUE.setMaxUpdatesPerTick(max);
+	}
+
+	public static int getMaxUpdatesPerTick() {
+		return QUEUE.getMaxUpdatesPerTick();
+	}
+
+	/**
+	 * @return the packets all scoreboards sent during the last tick, a bundle counts as one packet
+	 */
+	public static int getPacketsLastTick() {
+		return packetsLastTick;
+	}
+
+	/**
+	 * @return the scoreboards flushed by the scheduler in the last tick
+	 */
+	public static int getUpdatesLastTick() {
+		return updatesLastTick;
+	}
+
+	/**
+	 * @return the scoreboards marked dirty and not yet flushed
+	 */
+	public static int getPendingCount() {
+		return QUEUE.getPendingCount();
+	}
+
+	static void countPackets(int packets) {
+		// only counted while there are ticks to attribute them to
+		if (task != null) PACKETS.addAndGet(packets);
+	}
+
+	private static void tick() {
+		updatesLastTick = QUEUE.tick(DefaultScoreboard::isDeleted, ScoreboardScheduler::update);
+		packetsLastTick = PACKETS.getAndSet(0);
+	}
+
+	private static void update(DefaultScoreboard<?> board) {
+		try {
+			board.update();
+		} catch (RuntimeException e) {
+			board.getCreator().getLogger().log(Level.SEVERE, "Unable to update scoreboard " + board.getId(), e);
+		}
+	}
+
+	private static DefaultScoreboard<?> board(ScoreboardUI<?> scoreboard) {
+		if (scoreboard instanceof DefaultScoreboard<?> board) return board;
+		throw new IllegalArgumentException("Unsupported scoreboard " + scoreboard);
+	}
+
+}
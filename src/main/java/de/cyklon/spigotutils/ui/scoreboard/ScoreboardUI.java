@@ -1,6 +1,7 @@
 package de.cyklon.spigotutils.ui.scoreboard;
 
 import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -12,7 +13,18 @@ import java.util.List;
 public interface ScoreboardUI<T> {
 
 	static @NotNull Collection<ScoreboardUI<?>> getScoreboards() {
-		return new ArrayList<>(DefaultScoreboard.SCOREBOARDS);
+		return new ArrayList<>(ScoreboardRegistry.all());
+	}
+
+	/**
+	 * @return the scoreboards shown to the player
+	 */
+	static @NotNull Collection<ScoreboardUI<?>> getScoreboards(@NotNull Player player) {
+		return new ArrayList<>(ScoreboardRegistry.byViewer(player.getUniqueId()));
+	}
+
+	static @Nullable ScoreboardUI<?> getScoreboard(@NotNull String id) {
+		return ScoreboardRegistry.get(id);
 	}
 
 	static @NotNull ScoreboardUI<String> getLegacyServerScoreboard(@NotNull Plugin plugin) {
@@ -39,8 +51,16 @@ public interface ScoreboardUI<T> {
 
 	public void clearLines();
 
+	/**
+	 * sends the staged changes right away
+	 */
 	public void update();
 
+	/**
+	 * marks the scoreboard dirty, the {@link ScoreboardScheduler} sends the staged changes with the next tick it is due for
+	 */
+	public void scheduleUpdate();
+
 	public @NotNull String getId();
 
 	public boolean isDeleted();
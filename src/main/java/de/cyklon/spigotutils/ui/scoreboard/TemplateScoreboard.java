@@ -0,0 +1,204 @@
+package de.cyklon.spigotutils.ui.scoreboard;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.function.Function;
+
+final class TemplateScoreboard extends DefaultLegacyScoreboard implements TemplateScoreboardUI, Listener {
+
+	private final Map<String, Function<Player, ?>> placeholders = new HashMap<>();
+	/**
+	 * the placeholder lines by slot, {@code null} for static lines which are sent to all players at once
+	 */
+	private final Template[] templates = new Template[LIMIT];
+	/**
+	 * the resolved lines last sent to each player, only set for the placeholder slots
+	 */
+	private final Map<UUID, String[]> resolved = new HashMap<>();
+	/**
+	 * players of the board that are offline, they are added again when they rejoin
+	 */
+	private final Set<UUID> offline = new HashSet<>();
+
+	TemplateScoreboard(Plugin plugin, Player... players) {
+		super(plugin, players);
+		Bukkit.getPluginManager().registerEvents(this, plugin);
+	}
+
+	@EventHandler
+	public void onJoin(PlayerJoinEvent event) {
+		if (isDeleted()) return;
+		Player player = event.getPlayer();
+		if (offline.remove(player.getUniqueId())) addPlayer(player);
+	}
+
+	@EventHandler
+	public void onQuit(PlayerQuitEvent event) {
+		if (isDeleted()) return;
+		Player player = event.getPlayer();
+		// the board does not keep the player object or the resolved lines of offline players, only their uuid
+		if (removePlayer(player)) offline.add(player.getUniqueId());
+	}
+
+	@Override
+	public boolean addPlayer(@NotNull Player player) {
+		boolean f = super.addPlayer(player);
+		if (f) show(player);
+		return f;
+	}
+
+	@Override
+	public boolean removePlayer(Player player) {
+		offline.remove(player.getUniqueId());
+		boolean f = super.removePlayer(player);
+		if (f) hide(player);
+		return f;
+	}
+
+	@Override
+	public @NotNull List<Player> getPlayers() {
+		return super.getPlayers();
+	}
+
+	@Override
+	public void setPlaceholder(@NotNull String name, @NotNull Function<Player, ?> resolver) {
+		placeholders.put(Objects.requireNonNull(name, "name"), Objects.requireNonNull(resolver, "resolver"));
+	}
+
+	@Override
+	public void removePlaceholder(@NotNull String name) {
+		placeholders.remove(name);
+	}
+
+	@Override
+	public void update() {
+		super.update();
+		refresh();
+	}
+
+	@Override
+	public synchronized void refresh() {
+		for (Player player : getPlayers()) refresh(player);
+	}
+
+	@Override
+	public synchronized void refresh(@NotNull Player player) {
+		if (isDeleted() || !player.isOnline() || !contains(player)) return;
+		String[] sent = resolved.computeIfAbsent(player.getUniqueId(), uuid -> new String[LIMIT]);
+		List<Object> packets = null;
+		try {
+			for (int i = 0; i < LIMIT; i++) {
+				Template template = templates[i];
+				if (template == null) continue;
+				String line = template.resolve(player, placeholders);
+				if (line.equals(sent[i])) continue;
+				sent[i] = line;
+				if (packets == null) packets = new ArrayList<>();
+				packets.add(lineChangePacket(line, i));
+			}
+			if (packets != null) sendPackets(player, packets);
+		} catch (Throwable t) {
+			throw new RuntimeException("Unable to refresh scoreboard for player '" + player.getName() + "'", t);
+		}
+	}
+
+	// the shared part of show and hide is the same for every player, the placeholder lines follow per player
+	@Override
+	protected boolean isBroadcast() {
+		return true;
+	}
+
+	@Override
+	protected synchronized void show(Player player) {
+		super.show(player);
+		resolved.remove(player.getUniqueId());
+		refresh(player);
+	}
+
+	@Override
+	protected synchronized void hide(Player player) {
+		super.hide(player);
+		resolved.remove(player.getUniqueId());
+	}
+
+	@Override
+	public synchronized void delete() {
+		super.delete();
+		resolved.clear();
+		offline.clear();
+	}
+
+	@Override
+	protected void sendLineChange(String line, int index) throws Throwable {
+		Template current = templates[index];
+		// an unchanged placeholder line is resolved per player by refresh
+		if (current != null && current.line().equals(line)) return;
+		Template template = Template.compile(line);
+		templates[index] = template;
+		forget(index);
+		if (template == null) super.sendLineChange(line, index);
+	}
+
+	@Override
+	protected void slotReleased(int index) {
+		templates[index] = null;
+		forget(index);
+	}
+
+	private void forget(int index) {
+		for (String[] sent : resolved.values()) sent[index] = null;
+	}
+
+	/**
+	 * a line split at its placeholders, {@code literals} has one element more than {@code names}
+	 */
+	private record Template(String line, String[] literals, String[] names) {
+
+		/**
+		 * @return {@code null} if the line has no placeholders
+		 */
+		static Template compile(String line) {
+			List<String> literals = new ArrayList<>();
+			List<String> names = new ArrayList<>();
+			int literal = 0;
+			int open = line.indexOf('{');
+			while (open != -1) {
+				int close = line.indexOf('}', open + 1);
+				if (close == -1) break;
+				// the innermost pair, so a stray brace stays text
+				open = line.lastIndexOf('{', close);
+				// empty braces are kept as text
+				if (close > open + 1) {
+					literals.add(line.substring(literal, open));
+					names.add(line.substring(open + 1, close));
+					literal = close + 1;
+				}
+				open = line.indexOf('{', close + 1);
+			}
+			if (names.isEmpty()) return null;
+			literals.add(line.substring(literal));
+			return new Template(line, literals.toArray(String[]::new), names.toArray(String[]::new));
+		}
+
+		String resolve(Player player, Map<String, Function<Player, ?>> placeholders) {
+			StringBuilder sb = new StringBuilder(line.length() + 16);
+			for (int i = 0; i < names.length; i++) {
+				sb.append(literals[i]);
+				Function<Player, ?> placeholder = placeholders.get(names[i]);
+				// unknown placeholders stay as they are
+				if (placeholder == null) sb.append('{').append(names[i]).append('}');
+				else sb.append(placeholder.apply(player));
+			}
+			return sb.append(literals[names.length]).toString();
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+package de.cyklon.spigotutils.ui.scoreboard;
+
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Function;
+
+/**
+ * a scoreboard whose lines may contain placeholders like {@code {kills}}, resolved for every player.
+ * <p>
+ * Lines without placeholders are shared by all players, only the resolved placeholder lines are kept per player
+ * and {@link #refresh()} sends the lines whose resolved text changed
+ */
+public interface TemplateScoreboardUI extends PlayerScoreboardUI<String> {
+
+	static @NotNull TemplateScoreboardUI getTemplateScoreboard(@NotNull Plugin plugin, @NotNull Player... players) {
+		return new TemplateScoreboard(plugin, players);
+	}
+
+	/**
+	 * @param name the name without braces
+	 */
+	public void setPlaceholder(@NotNull String name, @NotNull Function<Player, ?> resolver);
+
+	public void removePlaceholder(@NotNull String name);
+
+	/**
+	 * resolves the placeholders for every player, also done by {@link #update()}
+	 */
+	public void refresh();
+
+	public void refresh(@NotNull Player player);
+
+}
@@ -0,0 +1,111 @@
+package de.cyklon.spigotutils.ui.scoreboard;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * the scheduling of the {@link ScoreboardScheduler} without any server access, decides which targets are flushed in a tick.
+ * <p>
+ * Every target gets a phase when it registers, so targets with the same rate are spread over the ticks of their interval.
+ * Has to be used from a single thread, apart from {@link #register(Object)}
+ */
+final class UpdateQueue<T> {
+
+	static final int TICKS_PER_SECOND = 20;
+	static final int DEFAULT_MAX_UPDATES_PER_TICK = 64;
+
+	private final Deque<Entry<T>> pending = new ArrayDeque<>();
+	private final AtomicInteger phases = new AtomicInteger();
+	private long tick;
+	private int maxUpdatesPerTick = DEFAULT_MAX_UPDATES_PER_TICK;
+
+	Entry<T> register(T target) {
+		return new Entry<>(target, phases.getAndIncrement());
+	}
+
+	/**
+	 * @return false if the entry was already pending
+	 */
+	boolean markDirty(Entry<T> entry) {
+		if (entry.scheduled) return false;
+		entry.scheduled = true;
+		pending.add(entry);
+		return true;
+	}
+
+	/**
+	 * @param hz the updates per second, from 1 to 20
+	 */
+	void setUpdateRate(Entry<T> entry, int hz) {
+		if (hz < 1 || hz > TICKS_PER_SECOND) throw new IllegalArgumentException("The update rate has to be between 1 and " + TICKS_PER_SECOND + " hz");
+		int interval = Math.round((float) TICKS_PER_SECOND / hz);
+		entry.interval = interval;
+		entry.rate = hz;
+		// the next tick of the phase, targets registered one after another flush in different ticks
+		entry.nextUpdate = tick + 1 + Math.floorMod(entry.phase - (tick + 1), interval);
+	}
+
+	int getUpdateRate(Entry<T> entry) {
+		return entry.rate;
+	}
+
+	void setMaxUpdatesPerTick(int max) {
+		if (max < 1) throw new IllegalArgumentException("At least one update per tick is required");
+		maxUpdatesPerTick = max;
+	}
+
+	int getMaxUpdatesPerTick() {
+		return maxUpdatesPerTick;
+	}
+
+	int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * advances one tick and updates the due targets, at most {@link #getMaxUpdatesPerTick()}.
+	 * Targets that are not due or over the cap stay pending
+	 *
+	 * @return the updated targets
+	 */
+	int tick(Predicate<T> deleted, Consumer<T> update) {
+		tick++;
+		int updates = 0;
+		// every entry is looked at once per tick, entries that are not due yet go back to the end
+		for (int i = pending.size(); i > 0 && updates < maxUpdatesPerTick; i--) {
+			Entry<T> entry = pending.poll();
+			if (deleted.test(entry.target)) {
+				entry.scheduled = false;
+				continue;
+			}
+			if (tick < entry.nextUpdate) {
+				pending.add(entry);
+				continue;
+			}
+			entry.scheduled = false;
+			entry.nextUpdate = tick + entry.interval;
+			update.accept(entry.target);
+			updates++;
+		}
+		return updates;
+	}
+
+	static final class Entry<T> {
+
+		private final T target;
+		private final int phase;
+		private boolean scheduled;
+		private int interval = 1;
+		private int rate = TICKS_PER_SECOND;
+		private long nextUpdate;
+
+		private Entry(T target, int phase) {
+			this.target = target;
+			this.phase = phase;
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+package de.cyklon.spigotutils.nbt;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NBTPathTest {
+
+	private static void assertSegments(NBTPath path, Object... segments) {
+		assertEquals(segments.length, path.length(), "segments of " + path);
+		for (int i = 0; i < segments.length; i++) {
+			if (segments[i] instanceof Integer index) {
+				assertNull(path.key(i), "key of segment " + i + " in " + path);
+				assertEquals(index, path.index(i), "index of segment " + i + " in " + path);
+			} else {
+				assertEquals(segments[i], path.key(i), "key of segment " + i + " in " + path);
+				assertEquals(-1, path.index(i), "index of segment " + i + " in " + path);
+			}
+		}
+	}
+
+	@Test
+	void singleKey() {
+		NBTPath path = NBTPath.of("CustomModelData");
+		assertSegments(path, "CustomModelData");
+		assertEquals("CustomModelData", path.rootKey());
+		assertEquals("CustomModelData", path.toString());
+	}
+
+	@Test
+	void nestedKeys() {
+		NBTPath path = NBTPath.of("a.b.c");
+		assertSegments(path, "a", "b", "c");
+		assertEquals("a", path.rootKey());
+	}
+
+	@Test
+	void listIndices() {
+		assertSegments(NBTPath.of("display.Lore[0]"), "display", "Lore", 0);
+		assertSegments(NBTPath.of("matrix[2][13]"), "matrix", 2, 13);
+		assertSegments(NBTPath.of("Items[3].tag.display"), "Items", 3, "tag", "display");
+	}
+
+	@Test
+	void keysMayContainAnyOtherCharacter() {
+		assertSegments(NBTPath.of("minecraft:custom_name.\u00e4-x"), "minecraft:custom_name", "\u00e4-x");
+	}
+
+	@Test
+	void pathsAreCached() {
+		assertSame(NBTPath.of("cached.path[1]"), NBTPath.of("cached.path[1]"));
+		assertEquals(NBTPath.of("cached.path[1]"), NBTPath.of(new String("cached.path[1]")));
+	}
+
+	@Test
+	void malformedPathsAreRejected() {
+		for (String path : new String[]{"", ".a", "a.", "a..b", "[0]", "a[", "a[x]", "a[-1]", "a[0]b"}) {
+			assertThrows(IllegalArgumentException.class, () -> NBTPath.of(path), path);
+		}
+	}
+
+}
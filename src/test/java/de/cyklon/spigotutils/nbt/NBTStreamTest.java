@@ -0,0 +1,242 @@
+package de.cyklon.spigotutils.nbt;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NBTStreamTest {
+
+	/**
+	 * a compound with every tag type, a nested compound and lists of values, compounds and nothing
+	 */
+	private static byte[] sample() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (NBTWriter writer = new NBTWriter(bytes)) {
+			writer.beginCompound("root");
+			writer.writeByte("byte", (byte) -1);
+			writer.writeShort("short", (short) 300);
+			writer.writeInt("int", 3465);
+			writer.writeLong("long", Long.MIN_VALUE);
+			writer.writeFloat("float", 1.5f);
+			writer.writeDouble("double", -0.25);
+			writer.writeString("string", "\u00e4 line");
+			writer.writeByteArray("bytes", new byte[4096]);
+			writer.writeIntArray("ints", new int[]{1, 2, 3});
+			writer.writeLongArray("longs", new long[]{4, 5});
+			writer.beginCompound("nested");
+			writer.writeString("id", "minecraft:stone");
+			writer.endCompound();
+			writer.beginList("lore", NBTType.STRING, 2);
+			writer.writeString(null, "first");
+			writer.writeString(null, "second");
+			writer.endList();
+			writer.beginList("items", NBTType.COMPOUND, 1);
+			writer.beginCompound(null);
+			writer.writeInt("count", 64);
+			writer.endCompound();
+			writer.endList();
+			writer.beginList("empty", NBTType.END, 0);
+			writer.endList();
+			writer.writeInt("target", 42);
+			writer.endCompound();
+		}
+		return bytes.toByteArray();
+	}
+
+	private static NBTReader reader(byte[] bytes) {
+		return new NBTReader(new ByteArrayInputStream(bytes));
+	}
+
+	@Test
+	void roundTrip() throws IOException {
+		try (NBTReader reader = reader(sample())) {
+			assertEquals(NBTReader.Token.START_COMPOUND, reader.next());
+			assertEquals("root", reader.getName());
+
+			assertValue(reader, "byte", (byte) -1);
+			assertValue(reader, "short", (short) 300);
+			assertValue(reader, "int", 3465);
+			assertValue(reader, "long", Long.MIN_VALUE);
+			assertValue(reader, "float", 1.5f);
+			assertValue(reader, "double", -0.25);
+			assertValue(reader, "string", "\u00e4 line");
+			assertEquals(NBTReader.Token.VALUE, reader.next());
+			assertArrayEquals(new byte[4096], reader.byteArrayValue());
+			assertEquals(NBTReader.Token.VALUE, reader.next());
+			assertArrayEquals(new int[]{1, 2, 3}, reader.intArrayValue());
+			assertEquals(NBTReader.Token.VALUE, reader.next());
+			assertArrayEquals(new long[]{4, 5}, reader.longArrayValue());
+
+			assertEquals(NBTReader.Token.START_COMPOUND, reader.next());
+			assertEquals("nested", reader.getName());
+			assertValue(reader, "id", "minecraft:stone");
+			assertEquals(NBTReader.Token.END_COMPOUND, reader.next());
+
+			assertEquals(NBTReader.Token.START_LIST, reader.next());
+			assertEquals(NBTType.STRING, reader.getListType());
+			assertEquals(2, reader.getListRemaining());
+			assertValue(reader, null, "first");
+			assertValue(reader, null, "second");
+			assertEquals(NBTReader.Token.END_LIST, reader.next());
+
+			assertEquals(NBTReader.Token.START_LIST, reader.next());
+			assertEquals(NBTReader.Token.START_COMPOUND, reader.next());
+			assertNull(reader.getName());
+			assertValue(reader, "count", 64);
+			assertEquals(NBTReader.Token.END_COMPOUND, reader.next());
+			assertEquals(NBTReader.Token.END_LIST, reader.next());
+
+			assertEquals(NBTReader.Token.START_LIST, reader.next());
+			assertEquals(NBTReader.Token.END_LIST, reader.next());
+
+			assertValue(reader, "target", 42);
+			assertEquals(NBTReader.Token.END_COMPOUND, reader.next());
+			assertEquals(NBTReader.Token.END_DOCUMENT, reader.next());
+			assertEquals(0, reader.getDepth());
+		}
+	}
+
+	private static void assertValue(NBTReader reader, String name, Object expected) throws IOException {
+		assertEquals(NBTReader.Token.VALUE, reader.next());
+		assertEquals(name, reader.getName());
+		assertEquals(expected, reader.value());
+	}
+
+	@Test
+	void findSkipsUnreadTags() throws IOException {
+		try (NBTReader reader = reader(sample())) {
+			reader.next();
+			assertTrue(reader.find("target"));
+			assertEquals(42, reader.intValue());
+			assertEquals(NBTReader.Token.END_COMPOUND, reader.next());
+		}
+	}
+
+	@Test
+	void findInsideNestedCompound() throws IOException {
+		try (NBTReader reader = reader(sample())) {
+			reader.next();
+			assertTrue(reader.find("nested"));
+			assertTrue(reader.find("id"));
+			assertEquals("minecraft:stone", reader.stringValue());
+			assertEquals(NBTReader.Token.END_COMPOUND, reader.next());
+			// the reader is back in the root compound
+			assertTrue(reader.find("target"));
+		}
+	}
+
+	@Test
+	void findMissingTag() throws IOException {
+		try (NBTReader reader = reader(sample())) {
+			reader.next();
+			assertFalse(reader.find("missing"));
+			assertEquals(0, reader.getDepth());
+			assertEquals(NBTReader.Token.END_DOCUMENT, reader.next());
+		}
+	}
+
+	@Test
+	void skipSubtrees() throws IOException {
+		try (NBTReader reader = reader(sample())) {
+			reader.next();
+			while (reader.next() != NBTReader.Token.START_LIST) reader.skip();
+			assertEquals("lore", reader.getName());
+			reader.skip();
+			assertEquals(NBTReader.Token.START_LIST, reader.next());
+			assertEquals("items", reader.getName());
+			reader.next();
+			// skipping a compound inside a list keeps the list position
+			reader.skip();
+			assertEquals(NBTReader.Token.END_LIST, reader.next());
+		}
+	}
+
+	@Test
+	void copyFiltersTags() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (NBTReader reader = reader(sample()); NBTWriter writer = new NBTWriter(bytes)) {
+			reader.next();
+			writer.beginCompound(reader.getName());
+			while (reader.next() != NBTReader.Token.END_COMPOUND) {
+				if (reader.getName().equals("bytes")) reader.skip();
+				else writer.copy(reader);
+			}
+			writer.endCompound();
+		}
+
+		try (NBTReader reader = reader(bytes.toByteArray())) {
+			reader.next();
+			assertEquals("root", reader.getName());
+			int tags = 0;
+			while (reader.next() != NBTReader.Token.END_COMPOUND) {
+				assertNotEquals("bytes", reader.getName());
+				reader.skip();
+				tags++;
+			}
+			assertEquals(14, tags);
+		}
+
+		try (NBTReader reader = reader(bytes.toByteArray())) {
+			reader.next();
+			assertTrue(reader.find("items"));
+			reader.next();
+			assertTrue(reader.find("count"));
+			assertEquals(64, reader.intValue());
+		}
+	}
+
+	@Test
+	void compressedRoundTrip() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (NBTReader reader = reader(sample()); NBTWriter writer = NBTWriter.compressed(bytes)) {
+			reader.next();
+			writer.copy(reader);
+		}
+		try (NBTReader reader = NBTReader.compressed(new ByteArrayInputStream(bytes.toByteArray()))) {
+			reader.next();
+			assertTrue(reader.find("target"));
+			assertEquals(42, reader.intValue());
+		}
+	}
+
+	@Test
+	void writerValidatesStructure() throws IOException {
+		NBTWriter writer = new NBTWriter(new ByteArrayOutputStream());
+		writer.beginCompound("");
+		assertThrows(IllegalArgumentException.class, () -> writer.writeInt(null, 1));
+		writer.beginList("list", NBTType.INT, 1);
+		assertThrows(IllegalArgumentException.class, () -> writer.writeInt("named", 1));
+		assertThrows(IllegalArgumentException.class, () -> writer.writeLong(null, 1));
+		assertThrows(IllegalStateException.class, writer::endList);
+		writer.writeInt(null, 1);
+		assertThrows(IllegalStateException.class, () -> writer.writeInt(null, 2));
+		writer.endList();
+		assertThrows(IllegalStateException.class, writer::close);
+	}
+
+	@Test
+	void readerRejectsUnknownTypes() {
+		byte[] bytes = {10, 0, 0, 99, 0, 0};
+		NBTReader reader = reader(bytes);
+		assertThrows(IOException.class, () -> {
+			reader.next();
+			reader.next();
+		});
+	}
+
+	@Test
+	void readerRejectsValueReadTwice() throws IOException {
+		try (NBTReader reader = reader(sample())) {
+			reader.next();
+			reader.next();
+			reader.byteValue();
+			assertThrows(IllegalStateException.class, reader::byteValue);
+			assertThrows(IllegalStateException.class, reader::intValue);
+		}
+	}
+
+}
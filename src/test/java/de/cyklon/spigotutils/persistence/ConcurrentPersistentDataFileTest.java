@@ -0,0 +1,293 @@
+package de.cyklon.spigotutils.persistence;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagInt;
+import org.bukkit.NamespacedKey;
+import org.bukkit.persistence.PersistentDataType;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * hammers a {@link ConcurrentPersistentDataFile} from many threads and checks that every save is consistent
+ * and that the file round-trips to exactly the state the threads left behind
+ */
+class ConcurrentPersistentDataFileTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 20_000;
+    private static final int KEYS_PER_THREAD = 64;
+    private static final int INCREMENTS = 2_000;
+
+    private static final NamespacedKey COUNTER = NamespacedKey.fromString("test:counter");
+    private static final NamespacedKey PAIR_A = NamespacedKey.fromString("test:pair_a");
+    private static final NamespacedKey PAIR_B = NamespacedKey.fromString("test:pair_b");
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(DataFormat.class)
+    void stress(DataFormat format) throws Exception {
+        File file = directory.resolve("data.dat").toFile();
+        ConcurrentPersistentDataFile data = new ConcurrentPersistentDataFile(file, SaveMode.MANUAL, format);
+
+        List<Map<NamespacedKey, Integer>> expected = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) expected.add(new HashMap<>());
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    await(start);
+                    Map<NamespacedKey, Integer> own = expected.get(thread);
+                    Random random = new Random(thread);
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        NamespacedKey key = NamespacedKey.fromString("test:t" + thread + "_" + random.nextInt(KEYS_PER_THREAD));
+                        if (random.nextInt(4) == 0) {
+                            data.remove(key);
+                            own.remove(key);
+                        } else {
+                            data.set(key, PersistentDataType.INTEGER, i);
+                            own.put(key, i);
+                        }
+                        if (i < INCREMENTS) increment(data);
+                    }
+                    return null;
+                }));
+            }
+
+            // bulk changes have to be all or nothing for every snapshot
+            Future<?> bulk = executor.submit(() -> {
+                await(start);
+                for (int value = 0; running.get(); value++) {
+                    NBTTagCompound compound = new NBTTagCompound();
+                    compound.a(PersistentDataKeys.toRaw(PAIR_A), NBTTagInt.a(value));
+                    compound.a(PersistentDataKeys.toRaw(PAIR_B), NBTTagInt.a(value));
+                    data.readFromBytes(format == DataFormat.MAPPED ? UncompressedNBT.write(compound, Map.of()) : PersistentDataFile.serialize(compound), false);
+                }
+                return null;
+            });
+
+            Future<?> saver = executor.submit(() -> {
+                await(start);
+                while (running.get()) {
+                    data.save();
+                    NBTTagCompound snapshot = data.snapshotCompound();
+                    assertEquals(snapshot.c(PersistentDataKeys.toRaw(PAIR_A)), snapshot.c(PersistentDataKeys.toRaw(PAIR_B)), "snapshot contains half of a bulk change");
+                }
+                return null;
+            });
+
+            start.countDown();
+            for (Future<?> writer : writers) writer.get(2, TimeUnit.MINUTES);
+            running.set(false);
+            bulk.get(1, TimeUnit.MINUTES);
+            saver.get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<NamespacedKey, Integer> all = new HashMap<>();
+        expected.forEach(all::putAll);
+        assertState(data, all);
+        data.save();
+
+        PersistentDataFile reopened = new ConcurrentPersistentDataFile(file, SaveMode.MANUAL, format);
+        assertState(reopened, all);
+        assertEquals(data.get(PAIR_A, PersistentDataType.INTEGER), reopened.get(PAIR_A, PersistentDataType.INTEGER));
+        assertEquals(data.get(PAIR_A, PersistentDataType.INTEGER), reopened.get(PAIR_B, PersistentDataType.INTEGER));
+        assertEquals(THREADS * INCREMENTS, reopened.get(COUNTER, PersistentDataType.INTEGER));
+    }
+
+    /**
+     * decodes the entries of a mapped file from many threads while others replace and remove them
+     */
+    @ParameterizedTest
+    @EnumSource(value = SaveMode.class, names = {"MANUAL", "JOURNAL"})
+    void lazyDecodeRaces(SaveMode saveMode) throws Exception {
+        File file = directory.resolve("mapped.dat").toFile();
+        int keys = 2_000;
+        PersistentDataFile initial = new ConcurrentPersistentDataFile(file, SaveMode.MANUAL, DataFormat.MAPPED);
+        for (int i = 0; i < keys; i++) initial.set(key(i), PersistentDataType.INTEGER, i);
+        initial.save();
+
+        ConcurrentPersistentDataFile data = new ConcurrentPersistentDataFile(file, saveMode, DataFormat.MAPPED);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    await(start);
+                    for (int i = 0; i < keys; i++) {
+                        // one thread per residue writes, all others only read and decode
+                        if (i % THREADS != thread) {
+                            Integer value = data.get(key(i), PersistentDataType.INTEGER);
+                            if (value != null) assertTrue(value == i || value == -i, "unexpected value " + value + " for key " + i);
+                        } else if (i % 2 == 0) data.remove(key(i));
+                        else data.set(key(i), PersistentDataType.INTEGER, -i);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) future.get(2, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<NamespacedKey, Integer> expected = new HashMap<>();
+        for (int i = 1; i < keys; i += 2) expected.put(key(i), -i);
+        assertState(data, expected);
+        data.save();
+        assertState(new ConcurrentPersistentDataFile(file, SaveMode.MANUAL, DataFormat.MAPPED), expected);
+    }
+
+    @ParameterizedTest
+    @EnumSource(DataFormat.class)
+    void compareAndSetFromManyThreads(DataFormat format) throws Exception {
+        ConcurrentPersistentDataFile data = new ConcurrentPersistentDataFile(directory.resolve("cas.dat").toFile(), SaveMode.MANUAL, format);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < INCREMENTS; i++) increment(data);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) future.get(2, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(THREADS * INCREMENTS, data.get(COUNTER, PersistentDataType.INTEGER));
+    }
+
+    /**
+     * writers never pause while the saves run, every save still has to finish instead of retrying its copy forever
+     */
+    @ParameterizedTest
+    @EnumSource(DataFormat.class)
+    void savesDuringSustainedWrites(DataFormat format) throws Exception {
+        ConcurrentPersistentDataFile data = new ConcurrentPersistentDataFile(directory.resolve("sustained.dat").toFile(), SaveMode.MANUAL, format);
+        int saves = 50;
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    Random random = new Random(thread);
+                    for (int i = 0; running.get(); i++) {
+                        data.set(NamespacedKey.fromString("test:t" + thread + "_" + random.nextInt(KEYS_PER_THREAD)), PersistentDataType.INTEGER, i);
+                    }
+                    return null;
+                }));
+            }
+            Future<?> saver = executor.submit(() -> {
+                for (int i = 0; i < saves; i++) data.save();
+                return null;
+            });
+            try {
+                saver.get(1, TimeUnit.MINUTES);
+            } finally {
+                running.set(false);
+            }
+            for (Future<?> writer : writers) writer.get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * the journal is group committed with the latest tag of every key, replaying it has to restore exactly what the threads left behind
+     */
+    @ParameterizedTest
+    @EnumSource(DataFormat.class)
+    void journalGroupCommit(DataFormat format) throws Exception {
+        File file = directory.resolve("journal.dat").toFile();
+        // no compaction during the test, the reopened file has to come from the journal alone
+        ConcurrentPersistentDataFile data = new ConcurrentPersistentDataFile(file, SaveMode.JOURNAL, format, Duration.ofHours(1), Integer.MAX_VALUE);
+
+        List<Map<NamespacedKey, Integer>> expected = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) expected.add(new HashMap<>());
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    await(start);
+                    Map<NamespacedKey, Integer> own = expected.get(thread);
+                    Random random = new Random(thread);
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        NamespacedKey key = NamespacedKey.fromString("test:t" + thread + "_" + random.nextInt(KEYS_PER_THREAD));
+                        if (random.nextInt(4) == 0) {
+                            data.remove(key);
+                            own.remove(key);
+                        } else {
+                            data.set(key, PersistentDataType.INTEGER, i);
+                            own.put(key, i);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) writer.get(2, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+        data.syncJournal();
+
+        Map<NamespacedKey, Integer> all = new HashMap<>();
+        expected.forEach(all::putAll);
+        assertState(new ConcurrentPersistentDataFile(file, SaveMode.MANUAL, format), all);
+    }
+
+    private static void increment(PersistentDataFile data) {
+        while (true) {
+            Integer current = data.get(COUNTER, PersistentDataType.INTEGER);
+            if (data.compareAndSet(COUNTER, PersistentDataType.INTEGER, current, current == null ? 1 : current + 1)) return;
+        }
+    }
+
+    private static void assertState(PersistentDataFile data, Map<NamespacedKey, Integer> expected) {
+        for (Map.Entry<NamespacedKey, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), data.get(entry.getKey(), PersistentDataType.INTEGER), entry.getKey().toString());
+        }
+        Set<NamespacedKey> keys = new HashSet<>(data.getKeys());
+        keys.removeAll(List.of(COUNTER, PAIR_A, PAIR_B));
+        assertEquals(expected.keySet(), keys);
+    }
+
+    private static NamespacedKey key(int i) {
+        return NamespacedKey.fromString("test:key_" + i);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
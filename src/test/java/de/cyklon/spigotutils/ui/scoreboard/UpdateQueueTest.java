@@ -0,0 +1,115 @@
+package de.cyklon.spigotutils.ui.scoreboard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateQueueTest {
+
+	/**
+	 * marks every entry dirty and ticks until all of them were updated
+	 *
+	 * @return the tick every target was updated in, by target
+	 */
+	private static List<Integer> flushTicks(UpdateQueue<Integer> queue, List<UpdateQueue.Entry<Integer>> entries) {
+		List<Integer> ticks = new ArrayList<>();
+		for (int i = 0; i < entries.size(); i++) ticks.add(-1);
+		for (UpdateQueue.Entry<Integer> entry : entries) queue.markDirty(entry);
+		for (int tick = 1; queue.getPendingCount() > 0; tick++) {
+			int current = tick;
+			queue.tick(target -> false, target -> ticks.set(target, current));
+			assertTrue(tick < 1000, "the queue never drained");
+		}
+		return ticks;
+	}
+
+	private static List<UpdateQueue.Entry<Integer>> register(UpdateQueue<Integer> queue, int count) {
+		List<UpdateQueue.Entry<Integer>> entries = new ArrayList<>();
+		for (int i = 0; i < count; i++) entries.add(queue.register(i));
+		return entries;
+	}
+
+	@Test
+	void sameRateIsSpreadOverTheInterval() {
+		UpdateQueue<Integer> queue = new UpdateQueue<>();
+		List<UpdateQueue.Entry<Integer>> entries = register(queue, 4);
+		for (UpdateQueue.Entry<Integer> entry : entries) queue.setUpdateRate(entry, 5);
+
+		List<Integer> ticks = flushTicks(queue, entries);
+		// an interval of 4 ticks, every board got its own tick
+		assertEquals(4, new HashSet<>(ticks).size(), "ticks " + ticks);
+		for (int tick : ticks) assertTrue(tick >= 1 && tick <= 4, "ticks " + ticks);
+	}
+
+	@Test
+	void defaultRateFlushesInTheNextTick() {
+		UpdateQueue<Integer> queue = new UpdateQueue<>();
+		List<Integer> ticks = flushTicks(queue, register(queue, 3));
+		assertEquals(List.of(1, 1, 1), ticks);
+	}
+
+	@Test
+	void rateLimitsTheFlushes() {
+		UpdateQueue<Integer> queue = new UpdateQueue<>();
+		UpdateQueue.Entry<Integer> entry = queue.register(0);
+		queue.setUpdateRate(entry, 2);
+		assertEquals(2, queue.getUpdateRate(entry));
+
+		List<Integer> updates = new ArrayList<>();
+		for (int tick = 1; tick <= 40; tick++) {
+			queue.markDirty(entry);
+			int current = tick;
+			queue.tick(target -> false, target -> updates.add(current));
+		}
+		assertEquals(4, updates.size(), "updates " + updates);
+		for (int i = 1; i < updates.size(); i++) assertEquals(10, updates.get(i) - updates.get(i - 1), "updates " + updates);
+	}
+
+	@Test
+	void capDefersTheRemainingBoards() {
+		UpdateQueue<Integer> queue = new UpdateQueue<>();
+		assertEquals(UpdateQueue.DEFAULT_MAX_UPDATES_PER_TICK, queue.getMaxUpdatesPerTick());
+		queue.setMaxUpdatesPerTick(10);
+
+		List<Integer> ticks = flushTicks(queue, register(queue, 25));
+		for (int target = 0; target < 25; target++) assertEquals(target / 10 + 1, ticks.get(target), "ticks " + ticks);
+	}
+
+	@Test
+	void markDirtyIsIdempotent() {
+		UpdateQueue<Integer> queue = new UpdateQueue<>();
+		UpdateQueue.Entry<Integer> entry = queue.register(0);
+		assertTrue(queue.markDirty(entry));
+		assertFalse(queue.markDirty(entry));
+		assertEquals(1, queue.getPendingCount());
+	}
+
+	@Test
+	void deletedTargetsAreDropped() {
+		UpdateQueue<Integer> queue = new UpdateQueue<>();
+		List<UpdateQueue.Entry<Integer>> entries = register(queue, 4);
+		for (UpdateQueue.Entry<Integer> entry : entries) queue.markDirty(entry);
+
+		Set<Integer> updated = new HashSet<>();
+		assertEquals(2, queue.tick(target -> target % 2 == 0, updated::add));
+		assertEquals(Set.of(1, 3), updated);
+		assertEquals(0, queue.getPendingCount());
+		// a dropped entry can be marked again
+		assertTrue(queue.markDirty(entries.get(0)));
+	}
+
+	@Test
+	void invalidSettingsAreRejected() {
+		UpdateQueue<Integer> queue = new UpdateQueue<>();
+		UpdateQueue.Entry<Integer> entry = queue.register(0);
+		assertThrows(IllegalArgumentException.class, () -> queue.setUpdateRate(entry, 0));
+		assertThrows(IllegalArgumentException.class, () -> queue.setUpdateRate(entry, 21));
+		assertThrows(IllegalArgumentException.class, () -> queue.setMaxUpdatesPerTick(0));
+	}
+
+}